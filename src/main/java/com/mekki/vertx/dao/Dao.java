@@ -2,10 +2,15 @@ package com.mekki.vertx.dao;
 
 import com.mekki.vertx.dao.impl.DefaultDaoImpl;
 import com.mekki.vertx.dao.impl.TransactionalDaoImpl;
+import com.mekki.vertx.dao.support.TransactionOptions;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 
+import java.util.function.Function;
+
 /**
  * Created by Mekki on 2018/3/23.
  * Vert.x.DAO
@@ -17,9 +22,9 @@ public interface Dao {
      *
      * @param vertx      Vert.x对象
      * @param jdbcConfig jdbc 配置
-     * @param handler    DefaultDaoImpl 对象
+     * @param handler    DefaultDaoImpl 对象，配置错误时为失败
      */
-    static void create(Vertx vertx, JsonObject jdbcConfig, Handler<DefaultDaoImpl> handler) {
+    static void create(Vertx vertx, JsonObject jdbcConfig, Handler<AsyncResult<DefaultDaoImpl>> handler) {
         TransactionalDaoImpl.create(vertx, jdbcConfig, handler);
     }
 
@@ -28,9 +33,51 @@ public interface Dao {
      *
      * @param vertx      Vert.x对象
      * @param jdbcConfig jdbc 配置
-     * @param handler    TransactionalDaoImpl 对象
+     * @param handler    TransactionalDaoImpl 对象，打开事务失败时为失败
      */
-    static void createTransactional(Vertx vertx, JsonObject jdbcConfig, Handler<TransactionalDaoImpl> handler) {
+    static void createTransactional(Vertx vertx, JsonObject jdbcConfig, Handler<AsyncResult<TransactionalDaoImpl>> handler) {
         TransactionalDaoImpl.createTransactional(vertx, jdbcConfig, handler);
     }
+
+    /**
+     * 构造 TransactionalDaoImpl 对象
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param options    事务选项（隔离级别、只读）
+     * @param handler    TransactionalDaoImpl 对象，打开事务失败时为失败
+     */
+    static void createTransactional(Vertx vertx, JsonObject jdbcConfig, TransactionOptions options,
+                                    Handler<AsyncResult<TransactionalDaoImpl>> handler) {
+        TransactionalDaoImpl.createTransactional(vertx, jdbcConfig, options, handler);
+    }
+
+    /**
+     * 在事务中执行操作，future 成功时提交、失败时回滚，最后总是关闭连接
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param block      事务操作
+     * @param handler    事务结果
+     * @param <T>        结果类型
+     */
+    static <T> void inTransaction(Vertx vertx, JsonObject jdbcConfig,
+                                  Function<TransactionalDaoImpl, Future<T>> block, Handler<AsyncResult<T>> handler) {
+        TransactionalDaoImpl.inTransaction(vertx, jdbcConfig, block, handler);
+    }
+
+    /**
+     * 在事务中执行操作，future 成功时提交、失败时回滚，最后总是关闭连接
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param options    事务选项（隔离级别、只读）
+     * @param block      事务操作
+     * @param handler    事务结果
+     * @param <T>        结果类型
+     */
+    static <T> void inTransaction(Vertx vertx, JsonObject jdbcConfig, TransactionOptions options,
+                                  Function<TransactionalDaoImpl, Future<T>> block, Handler<AsyncResult<T>> handler) {
+        TransactionalDaoImpl.inTransaction(vertx, jdbcConfig, options, block, handler);
+    }
 }
@@ -1,6 +1,17 @@
 package com.mekki.vertx.dao;
 
+import com.mekki.vertx.dao.support.AggregateRow;
+import com.mekki.vertx.dao.support.Aggregation;
+import com.mekki.vertx.dao.support.DataFormat;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Created by Mekki on 2018/3/23.
@@ -8,12 +19,36 @@ import io.vertx.core.Handler;
  */
 public interface EnhancedDao {
 
-    <E> void selectOne(E e, Handler<E> handler);
+    <E> void selectOne(E e, Handler<AsyncResult<E>> handler);
+
+    <E> void selectCount(E e, Handler<AsyncResult<Long>> handler);
+
+    <E> void insertSelective(E e, Handler<AsyncResult<Integer>> handler);
+
+    <E> void updateSelective(E e, Handler<AsyncResult<Integer>> handler);
+
+    <E> void insertBuffered(E e, Handler<AsyncResult<Integer>> handler);
+
+    <E> void upsert(E e, Handler<AsyncResult<Integer>> handler);
+
+    <E> void updateWhere(E example, E patch, Handler<AsyncResult<Integer>> handler);
+
+    <E> void updateWhere(E example, E patch, int chunkSize, Handler<AsyncResult<Integer>> handler);
+
+    <E> void deleteWhere(E example, Handler<AsyncResult<Integer>> handler);
+
+    <E> void deleteWhere(E example, int chunkSize, Handler<AsyncResult<Integer>> handler);
+
+    <E> void scan(E example, int parallelism, Handler<List<E>> chunkHandler, Handler<AsyncResult<Long>> handler);
+
+    <E> void scan(E example, int parallelism, int chunkSize, Function<List<E>, Future<Void>> chunkHandler,
+                  Handler<AsyncResult<Long>> handler);
 
-    <E> void selectCount(E e, Handler<Long> handler);
+    <E> void exportTo(E example, WriteStream<Buffer> out, DataFormat format, Handler<AsyncResult<Long>> handler);
 
-    <E> void insertSelective(E e, Handler<Integer> handler);
+    <E> void importFrom(Class<E> clazz, ReadStream<Buffer> in, DataFormat format, int batchSize,
+                        Handler<AsyncResult<Long>> handler);
 
-    <E> void updateSelective(E e, Handler<Integer> handler);
+    <E> void aggregate(E e, Aggregation aggregation, Handler<AsyncResult<List<AggregateRow>>> handler);
 
 }
@@ -1,6 +1,7 @@
 package com.mekki.vertx.dao;
 
 import com.mekki.vertx.dao.support.PageSupport;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 
 /**
@@ -8,5 +9,5 @@ import io.vertx.core.Handler;
  * 支持分页的DAO层接口
  */
 public interface PageDao {
-    <E> void select(E e, PageSupport<E> ps, Handler<PageSupport<E>> handler);
+    <E> void select(E e, PageSupport<E> ps, Handler<AsyncResult<PageSupport<E>>> handler);
 }
@@ -1,5 +1,6 @@
 package com.mekki.vertx.dao;
 
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 
 import java.util.List;
@@ -9,11 +10,11 @@ import java.util.List;
  * 基础CURD DAO接口
  */
 public interface SimpleCurdDao {
-    <E> void select(E e, Handler<List<E>> handler);
+    <E> void select(E e, Handler<AsyncResult<List<E>>> handler);
 
-    <E> void insert(E e, Handler<Integer> handler);
+    <E> void insert(E e, Handler<AsyncResult<Integer>> handler);
 
-    <E> void update(E e, Handler<Integer> handler);
+    <E> void update(E e, Handler<AsyncResult<Integer>> handler);
 
-    <E> void delete(E e, Handler<Integer> handler);
+    <E> void delete(E e, Handler<AsyncResult<Integer>> handler);
 }
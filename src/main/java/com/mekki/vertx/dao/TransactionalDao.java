@@ -1,5 +1,8 @@
 package com.mekki.vertx.dao;
 
+import com.mekki.vertx.dao.support.Savepoint;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 
 /**
@@ -7,9 +10,17 @@ import io.vertx.core.Handler;
  * 支持事务的DAO层接口
  */
 public interface TransactionalDao {
-    void commit(Handler<Void> handler);
+    void commit(Handler<AsyncResult<Void>> handler);
 
-    void rollback(Handler<Void> handler);
+    void rollback(Handler<AsyncResult<Void>> handler);
 
-    void close(Handler<Void> handler);
+    void close(Handler<AsyncResult<Void>> handler);
+
+    void savepoint(Handler<AsyncResult<Savepoint>> handler);
+
+    void rollbackTo(Savepoint savepoint, Handler<AsyncResult<Void>> handler);
+
+    void releaseSavepoint(Savepoint savepoint, Handler<AsyncResult<Void>> handler);
+
+    <T> void inTransaction(Handler<Future<T>> block, Handler<AsyncResult<T>> handler);
 }
@@ -4,20 +4,49 @@ import com.mekki.vertx.dao.EnhancedDao;
 import com.mekki.vertx.dao.PageDao;
 import com.mekki.vertx.dao.SimpleCurdDao;
 import com.mekki.vertx.dao.support.AbstractSQLConnectionSupport;
+import com.mekki.vertx.dao.support.AdmissionControl;
+import com.mekki.vertx.dao.support.AggregateRow;
+import com.mekki.vertx.dao.support.Aggregation;
+import com.mekki.vertx.dao.support.CacheInvalidator;
+import com.mekki.vertx.dao.support.CircuitBreaker;
+import com.mekki.vertx.dao.support.DataFormat;
 import com.mekki.vertx.dao.support.EntitySQLSupport;
+import com.mekki.vertx.dao.support.EntitySnapshots;
 import com.mekki.vertx.dao.support.PageSupport;
+import com.mekki.vertx.dao.support.ParameterizedSql;
+import com.mekki.vertx.dao.support.PoolSettings;
+import com.mekki.vertx.dao.support.RetryPolicy;
+import com.mekki.vertx.dao.support.SlowQueryLog;
+import com.mekki.vertx.dao.support.WriteBehindBuffer;
+import com.mekki.vertx.dao.support.dialect.Dialect;
+import com.mekki.vertx.dao.support.executor.SqlExecutor;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-import io.vertx.core.json.Json;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.jdbc.JDBCClient;
-import io.vertx.ext.jdbc.impl.JDBCClientImpl;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
 import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.UpdateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.OptimisticLockException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -31,22 +60,56 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
 
     private JsonObject jdbcConfig;
     private Vertx vertx;
-    private JDBCClientImpl sqlClient;
+    private SqlExecutor sqlExecutor;
+
+    /**
+     * 连接池配置
+     */
+    private PoolSettings poolSettings;
+
+    /**
+     * 数据库方言
+     */
+    private Dialect dialect;
+
+    /**
+     * 写缓冲，key 为实体类名
+     */
+    private Map<String, WriteBehindBuffer<?>> writeBehindBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * 查询加载的实体快照，所有DAO共享（事务DAO可以更新普通DAO加载的实体）
+     */
+    private static EntitySnapshots snapshots = new EntitySnapshots();
+
+    /**
+     * 是否为查询加载的实体保存快照，更新时只写修改过的字段
+     */
+    private boolean dirtyTracking;
+
+    /**
+     * 写操作后广播缓存失效
+     */
+    private CacheInvalidator cacheInvalidator;
 
     protected DefaultDaoImpl(Vertx vertx, JsonObject jdbcConfig) {
         this.jdbcConfig = jdbcConfig;
         this.vertx = vertx;
 
-        sqlClient = (JDBCClientImpl) JDBCClient.createShared(this.vertx, this.jdbcConfig);
+        poolSettings = PoolSettings.of(jdbcConfig.getJsonObject("pool"));
+        JsonObject executorConfig = poolSettings.apply(this.jdbcConfig);
+        sqlExecutor = SqlExecutor.of(this.vertx, executorConfig);
+        shareDataSourceControls(executorConfig);
+        dirtyTracking = jdbcConfig.getBoolean("dirty_tracking", false);
+        dialect = Dialect.of(jdbcConfig);
+        cacheInvalidator = CacheInvalidator.of(vertx, jdbcConfig.getJsonObject("invalidation"));
+        slowQueryLog = SlowQueryLog.of(vertx, jdbcConfig.getJsonObject("slow_query"));
         logger.info("jdbc config -> {}", jdbcConfig.toString());
     }
 
-    private static <E> E convert(JsonObject obj, Class<E> clazz) {
-        return Json.decodeValue(obj.toString(), clazz);
-    }
-
-    private static <E> List<E> convert(ResultSet rs, Class<E> clazz) {
-        return rs.getRows().stream().map(i -> convert(i, clazz)).collect(Collectors.toList());
+    private <E> List<E> convert(ResultSet rs, Class<E> clazz) {
+        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of(clazz, dialect);
+        return rs.getRows().stream().map(sqlSupport::fromRow).collect(Collectors.toList());
     }
 
     /**
@@ -54,10 +117,140 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      *
      * @param vertx      Vert.x对象
      * @param jdbcConfig jdbc 配置
-     * @param handler    DefaultDaoImpl 对象
+     * @param handler    DefaultDaoImpl 对象，配置错误时为失败
+     */
+    public static void create(Vertx vertx, JsonObject jdbcConfig, Handler<AsyncResult<DefaultDaoImpl>> handler) {
+        DefaultDaoImpl dao;
+        try {
+            dao = new DefaultDaoImpl(vertx, jdbcConfig);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        dao.registerFlushOnClose();
+        dao.warmUp(v -> handler.handle(Future.succeededFuture(dao)));
+    }
+
+    /**
+     * 预先建立 pool.min_idle 个连接（同时持有，使连接池扩充到该数量），配置了 validation_query 时逐个校验，
+     * 预热失败只记录日志，连接池会在使用时继续建立连接
+     *
+     * @param handler 预热完成后回调
+     */
+    protected void warmUp(Handler<Void> handler) {
+        int size = poolSettings.getWarmUpConnections();
+        if (size <= 0) {
+            handler.handle(null);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Future<SQLConnection>> connections = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Future<SQLConnection> connection = Future.future();
+            sqlExecutor.getConnection(ar -> {
+                if (ar.failed()) {
+                    connection.fail(ar.cause());
+                } else {
+                    validate(ar.result(), connection);
+                }
+            });
+            connections.add(connection);
+        }
+
+        CompositeFuture.join(new ArrayList<>(connections)).setHandler(ar -> {
+            connections.stream().filter(Future::succeeded).forEach(f -> f.result().close());
+
+            if (ar.succeeded()) {
+                logger.info("pool warmed up with {} connections in {} ms", size, System.currentTimeMillis() - start);
+            } else {
+                logger.warn("pool warm up incomplete cause : {}", ar.cause().getMessage());
+            }
+            handler.handle(null);
+        });
+    }
+
+    private void validate(SQLConnection connection, Future<SQLConnection> result) {
+        String validationQuery = poolSettings.getValidationQuery();
+        if (validationQuery == null) {
+            result.complete(connection);
+            return;
+        }
+
+        connection.query(validationQuery, ar -> {
+            if (ar.failed()) {
+                connection.close();
+                result.fail(ar.cause());
+            } else {
+                result.complete(connection);
+            }
+        });
+    }
+
+    /**
+     * 执行操作，操作中直接抛出的异常（例如构造SQL时的参数错误）作为失败的 Future 返回
+     *
+     * @param action 操作
+     * @param <T>    结果类型
+     * @return
      */
-    public static void create(Vertx vertx, JsonObject jdbcConfig, Handler<DefaultDaoImpl> handler) {
-        handler.handle(new DefaultDaoImpl(vertx, jdbcConfig));
+    private static <T> Future<T> attempt(Supplier<Future<T>> action) {
+        try {
+            return action.get();
+        } catch (RuntimeException ex) {
+            return Future.failedFuture(ex);
+        }
+    }
+
+    /**
+     * 执行查询
+     *
+     * @param entityClass 实体类型
+     * @param operation   操作名称（日志）
+     * @param sql         SQL
+     * @return 查询结果
+     */
+    private Future<ResultSet> executeQuery(Class<?> entityClass, String operation, String sql) {
+        logger.info("{}: {}", operation, sql);
+
+        Future<ResultSet> future = Future.future();
+        doQuery(entityClass, sql, null, future);
+        return future;
+    }
+
+    /**
+     * 执行更新
+     *
+     * @param entityClass 实体类型
+     * @param operation   操作名称（日志）
+     * @param sql         SQL
+     * @param idempotent  语句是否幂等
+     * @return 更新结果
+     */
+    private Future<UpdateResult> executeUpdate(Class<?> entityClass, String operation, String sql, boolean idempotent) {
+        logger.info("{}: {}", operation, sql);
+
+        Future<UpdateResult> future = Future.future();
+        doUpdate(entityClass, sql, null, idempotent, future);
+        return future;
+    }
+
+    /**
+     * 执行带参数的更新
+     *
+     * @param entityClass 实体类型
+     * @param operation   操作名称（日志）
+     * @param sql         带参数的SQL
+     * @param idempotent  语句是否幂等
+     * @return 更新结果
+     */
+    private Future<UpdateResult> executeUpdate(Class<?> entityClass, String operation, ParameterizedSql sql,
+                                               boolean idempotent) {
+        logger.info("{}: {}", operation, sql);
+
+        Future<UpdateResult> future = Future.future();
+        doUpdate(entityClass, sql.getSql(), sql.getParams(), idempotent, future);
+        return future;
     }
 
     /**
@@ -68,12 +261,12 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void select(E e, Handler<List<E>> handler) {
-
-        String sql = EntitySQLSupport.of((Class<E>) e.getClass()).buildSelectSql(e);
-        logger.info("select: {}", sql);
+    public <E> void select(E e, Handler<AsyncResult<List<E>>> handler) {
+        Class<E> clazz = (Class<E>) e.getClass();
 
-        doQuery(sql, rs -> handler.handle(convert(rs, (Class<E>) e.getClass())));
+        attempt(() -> executeQuery(clazz, "select", EntitySQLSupport.of(clazz, dialect).buildSelectSql(e)))
+            .map(rs -> track(convert(rs, clazz)))
+            .setHandler(handler);
     }
 
     /**
@@ -84,76 +277,250 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void insert(E e, Handler<Integer> handler) {
-        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass());
+    public <E> void insert(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> insertEntity(e, true, "insert")).setHandler(handler);
+    }
 
-        String sql = sqlSupport.buildInsertSql(e, true);
-        logger.info("insert: {}", sql);
+    /**
+     * 新增：先为客户端生成的主键赋值，执行后回写数据库生成的主键
+     *
+     * @param e                实体
+     * @param includeNullField 是否包括NULL字段
+     * @param operation        操作名称（日志）
+     * @param <E>              实体类型
+     * @return 影响行数
+     */
+    private <E> Future<Integer> insertEntity(E e, boolean includeNullField, String operation) {
+        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass(), dialect);
 
-        doUpdate(sql, ur -> {
-            sqlSupport.rewritePkValue(e, ur);
-            handler.handle(ur.getUpdated());
-        });
+        sqlSupport.initVersion(e);
+        return assignIds(sqlSupport, Collections.singletonList(e))
+            .compose(v -> executeUpdate(e.getClass(), operation, sqlSupport.buildInsertSql(e, includeNullField), false))
+            .map(ur -> {
+                sqlSupport.rewritePkValue(e, ur);
+                invalidate(sqlSupport, e, ur.getUpdated());
+                return ur.getUpdated();
+            });
     }
 
     /**
      * 更新
      *
      * @param e       实体
-     * @param handler 影响行数
+     * @param handler 影响行数，版本冲突时为 OptimisticLockException
      * @param <E>     实体类型
      */
     @Override
-    public <E> void update(E e, Handler<Integer> handler) {
-        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass());
+    public <E> void update(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> updateEntity(e, true, "update")).setHandler(handler);
+    }
+
+    /**
+     * 按主键更新，有快照时只更新修改过的字段
+     *
+     * @param e                实体
+     * @param includeNullField 是否包括NULL字段
+     * @param operation        操作名称（日志）
+     * @param <E>              实体类型
+     * @return 影响行数
+     */
+    private <E> Future<Integer> updateEntity(E e, boolean includeNullField, String operation) {
+        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass(), dialect);
 
-        String sql = sqlSupport.buildUpdateSql(e, true);
-        logger.info("update: {}", sql);
+        Object[] snapshot = snapshots.get(e);
+        if (snapshot != null) {
+            return updateDirty(sqlSupport, e, snapshot, includeNullField);
+        }
 
-        doUpdate(sql, ur -> handler.handle(ur.getUpdated()));
+        return executeUpdate(e.getClass(), operation, sqlSupport.buildUpdateSql(e, includeNullField),
+            isIdempotentUpdate(sqlSupport)).compose(ur -> versionedUpdate(sqlSupport, e, ur));
     }
 
     /**
      * 删除
      *
      * @param e       实体
-     * @param handler 影响行数
+     * @param handler 影响行数，版本冲突时为 OptimisticLockException
      * @param <E>     实体类型
      */
     @Override
-    public <E> void delete(E e, Handler<Integer> handler) {
-        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass());
+    public <E> void delete(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass(), dialect);
 
-        String sql = sqlSupport.buildDeleteSql(e);
-        logger.info("delete: {}", sql);
+            return executeUpdate(e.getClass(), "delete", sqlSupport.buildDeleteSql(e), false).compose(ur -> {
+                if (ur.getUpdated() == 0 && sqlSupport.getVersion(e) != null) {
+                    return Future.<Integer>failedFuture(new OptimisticLockException("delete conflict on "
+                        + e.getClass().getName() + ", version " + sqlSupport.getVersion(e) + " is stale"));
+                }
+                snapshots.remove(e);
+                invalidate(sqlSupport, e, ur.getUpdated());
+                return Future.succeededFuture(ur.getUpdated());
+            });
+        }).setHandler(handler);
+    }
 
-        doUpdate(sql, ur -> handler.handle(ur.getUpdated()));
+    @Override
+    public SqlExecutor getSqlExecutor() {
+        return sqlExecutor;
     }
 
-    public JDBCClientImpl getSqlClient() {
-        return sqlClient;
+    /**
+     * 切换到只读库连接池（jdbcConfig 中的 replica 配置，未配置时仍使用主库）
+     */
+    protected void routeToReplica() {
+        JsonObject replicaConfig = jdbcConfig.getJsonObject("replica");
+        if (replicaConfig == null) {
+            return;
+        }
+
+        JsonObject executorConfig = PoolSettings.of(replicaConfig.getJsonObject("pool")).apply(replicaConfig).copy()
+            .put("datasource_name", replicaConfig.getString("datasource_name", "vertx-dao-replica"))
+            .put("dialect", dialect.getName());
+        sqlExecutor = SqlExecutor.of(vertx, executorConfig);
+        shareDataSourceControls(executorConfig);
     }
 
     /**
-     * 查询一个（返回多个会抛出异常）
+     * 按数据源（后端名称 + 共享数据源名称，与连接池的共享方式一致）获取共用的重试预算、熔断器和准入控制
+     *
+     * @param executorConfig 执行后端的配置（用于取连接池大小）
+     */
+    private void shareDataSourceControls(JsonObject executorConfig) {
+        String dataSource = sqlExecutor.getName() + ":" + sqlExecutor.getDataSourceName();
+        retryPolicy = RetryPolicy.shared(dataSource, jdbcConfig.getJsonObject("retry"));
+        circuitBreaker = CircuitBreaker.shared(dataSource, jdbcConfig.getJsonObject("circuit_breaker"));
+        admissionControl = AdmissionControl.shared(dataSource, jdbcConfig.getJsonObject("admission"),
+            PoolSettings.maxPoolSize(executorConfig));
+    }
+
+    @Override
+    public Vertx getVertx() {
+        return vertx;
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    @Override
+    protected String explainSql(String sql) {
+        return dialect.explainSql(sql);
+    }
+
+    /**
+     * 为查询加载的实体保存快照
+     *
+     * @param elements 实体
+     * @param <E>      实体类型
+     * @return
+     */
+    private <E> List<E> track(List<E> elements) {
+        if (dirtyTracking && !elements.isEmpty()) {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) elements.get(0).getClass(), dialect);
+            elements.forEach(element -> snapshots.put(element, sqlSupport.snapshot(element)));
+        }
+        return elements;
+    }
+
+    /**
+     * 只更新与快照相比修改过的字段，没有修改时不访问数据库
+     *
+     * @param sqlSupport       SQL工具
+     * @param e                实体
+     * @param snapshot         加载时的快照
+     * @param includeNullField 是否包括被改为NULL的字段
+     * @param <E>              实体类型
+     * @return 影响行数
+     */
+    private <E> Future<Integer> updateDirty(EntitySQLSupport<E> sqlSupport, E e, Object[] snapshot, boolean includeNullField) {
+        ParameterizedSql sql = sqlSupport.buildDirtyUpdateSql(e, snapshot, includeNullField);
+        if (sql == null) {
+            logger.info("update skipped, nothing changed: {}", e.getClass().getName());
+            return Future.succeededFuture(0);
+        }
+
+        return executeUpdate(e.getClass(), "update dirty", sql, isIdempotentUpdate(sqlSupport))
+            .compose(ur -> versionedUpdate(sqlSupport, e, ur))
+            .map(updated -> {
+                snapshots.put(e, sqlSupport.snapshot(e));
+                return updated;
+            });
+    }
+
+    /**
+     * 按主键更新是否可以重试（有乐观锁版本字段时重试可能误报冲突，不重试）
+     *
+     * @param sqlSupport SQL工具
+     * @return
+     */
+    private boolean isIdempotentUpdate(EntitySQLSupport<?> sqlSupport) {
+        return retryPolicy.isRetryPkUpdate() && !sqlSupport.isVersioned();
+    }
+
+    /**
+     * 乐观锁：带版本条件的更新没有影响任何行时视为冲突，否则版本值加一
+     *
+     * @param sqlSupport SQL工具
+     * @param e          实体
+     * @param ur         更新结果
+     * @param <E>        实体类型
+     * @return 影响行数，冲突时为 OptimisticLockException
+     */
+    private <E> Future<Integer> versionedUpdate(EntitySQLSupport<E> sqlSupport, E e, UpdateResult ur) {
+        if (sqlSupport.getVersion(e) != null) {
+            if (ur.getUpdated() == 0) {
+                return Future.failedFuture(new OptimisticLockException("update conflict on " + e.getClass().getName()
+                    + ", version " + sqlSupport.getVersion(e) + " is stale"));
+            }
+            sqlSupport.incrementVersion(e);
+        }
+
+        invalidate(sqlSupport, e, ur.getUpdated());
+        return Future.succeededFuture(ur.getUpdated());
+    }
+
+    /**
+     * 写操作影响了数据时记录缓存失效
+     *
+     * @param sqlSupport SQL工具
+     * @param e          实体，为空时整表失效
+     * @param updated    影响行数
+     * @param <E>        实体类型
+     */
+    private <E> void invalidate(EntitySQLSupport<E> sqlSupport, E e, int updated) {
+        if (updated > 0) {
+            cacheInvalidator.invalidate(sqlSupport.getTable(), e != null ? sqlSupport.getPk(e) : null);
+        }
+    }
+
+    /**
+     * 缓存失效广播（未配置 invalidation 时不广播）
+     *
+     * @return
+     */
+    public CacheInvalidator getCacheInvalidator() {
+        return cacheInvalidator;
+    }
+
+    /**
+     * 查询一个
      *
      * @param e       实体
-     * @param handler 结果
+     * @param handler 结果，没有时为 null，返回多个时为失败
      * @param <E>     实体类型
      */
     @Override
-    public <E> void selectOne(E e, Handler<E> handler) {
-        select(e, h -> {
-            if (h.size() > 1) {
-                throw new RuntimeException("Expect one, but found " + h.size());
-            }
+    public <E> void selectOne(E e, Handler<AsyncResult<E>> handler) {
+        Future<List<E>> rows = Future.future();
+        select(e, rows);
 
-            if (h.size() == 0) {
-                handler.handle(null);
-            } else {
-                handler.handle(h.get(0));
+        rows.compose(h -> {
+            if (h.size() > 1) {
+                return Future.<E>failedFuture(new IllegalStateException("Expect one, but found " + h.size()));
             }
-        });
+            return Future.succeededFuture(h.isEmpty() ? null : h.get(0));
+        }).setHandler(handler);
     }
 
     /**
@@ -164,11 +531,32 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void selectCount(E e, Handler<Long> handler) {
-        String sql = EntitySQLSupport.of((Class<E>) e.getClass()).buildSelectCountSql(e);
-        logger.info("selectCount: {}", sql);
+    public <E> void selectCount(E e, Handler<AsyncResult<Long>> handler) {
+        Class<E> clazz = (Class<E>) e.getClass();
 
-        doQuery(sql, rs -> handler.handle(rs.getRows().get(0).getLong("count")));
+        attempt(() -> executeQuery(clazz, "selectCount", EntitySQLSupport.of(clazz, dialect).buildSelectCountSql(e)))
+            .map(rs -> rs.getRows().get(0).getLong("count"))
+            .setHandler(handler);
+    }
+
+    /**
+     * 聚合查询（COUNT / SUM / AVG / MIN / MAX，可按字段分组）
+     *
+     * @param e           实体（非空字段为查询条件）
+     * @param aggregation 聚合定义
+     * @param handler     结果行，分组时按分组字段排序
+     * @param <E>         实体类型
+     */
+    @Override
+    public <E> void aggregate(E e, Aggregation aggregation, Handler<AsyncResult<List<AggregateRow>>> handler) {
+        attempt(() -> {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass(), dialect);
+
+            return executeQuery(e.getClass(), "aggregate", sqlSupport.buildAggregateSql(e, aggregation))
+                .map(rs -> rs.getRows().stream()
+                    .map(row -> sqlSupport.toAggregateRow(row, aggregation))
+                    .collect(Collectors.toList()));
+        }).setHandler(handler);
     }
 
     /**
@@ -179,18 +567,571 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void insertSelective(E e, Handler<Integer> handler) {
-        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass());
+    public <E> void insertSelective(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> insertEntity(e, false, "insertSelective")).setHandler(handler);
+    }
+
+    /**
+     * 新增或更新（按主键，NULL字段会忽略），带 @Version 的实体不支持
+     *
+     * @param e       实体
+     * @param handler 影响行数（MySQL 更新时为 2）
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void upsert(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass(), dialect);
+
+            return assignIds(sqlSupport, Collections.singletonList(e))
+                .compose(v -> executeUpdate(e.getClass(), "upsert", sqlSupport.buildUpsertSql(e),
+                    isIdempotentUpdate(sqlSupport)))
+                .map(ur -> {
+                    invalidate(sqlSupport, e, ur.getUpdated());
+                    return ur.getUpdated();
+                });
+        }).setHandler(handler);
+    }
+
+    /**
+     * 按条件批量更新（一条语句）
+     *
+     * @param example 条件实体（非空字段为条件，不能全部为空）
+     * @param patch   更新实体（非空字段为更新值）
+     * @param handler 影响行数
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void updateWhere(E example, E patch, Handler<AsyncResult<Integer>> handler) {
+        updateWhere(example, patch, 0, handler);
+    }
+
+    /**
+     * 按条件批量更新，按主键分块执行（每块一条语句，非事务DAO中每块单独提交，锁只持有一块的时间）
+     *
+     * @param example   条件实体（非空字段为条件，不能全部为空）
+     * @param patch     更新实体（非空字段为更新值）
+     * @param chunkSize 每块行数，小于等于 0 时不分块
+     * @param handler   影响行数（各块之和）
+     * @param <E>       实体类型
+     */
+    @Override
+    public <E> void updateWhere(E example, E patch, int chunkSize, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) example.getClass(), dialect);
+
+            return doBulk(sqlSupport, example, chunkSize,
+                (lower, upper) -> sqlSupport.buildUpdateWhereSql(example, patch, lower, upper), "updateWhere");
+        }).setHandler(handler);
+    }
+
+    /**
+     * 按条件批量删除（一条语句）
+     *
+     * @param example 条件实体（非空字段为条件，不能全部为空）
+     * @param handler 影响行数
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void deleteWhere(E example, Handler<AsyncResult<Integer>> handler) {
+        deleteWhere(example, 0, handler);
+    }
+
+    /**
+     * 按条件批量删除，按主键分块执行
+     *
+     * @param example   条件实体（非空字段为条件，不能全部为空）
+     * @param chunkSize 每块行数，小于等于 0 时不分块
+     * @param handler   影响行数（各块之和）
+     * @param <E>       实体类型
+     */
+    @Override
+    public <E> void deleteWhere(E example, int chunkSize, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> {
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) example.getClass(), dialect);
+
+            return doBulk(sqlSupport, example, chunkSize,
+                (lower, upper) -> sqlSupport.buildDeleteWhereSql(example, lower, upper), "deleteWhere");
+        }).setHandler(handler);
+    }
+
+    /**
+     * 执行批量语句：不分块时直接执行，分块时先查出下一块的最大主键（keyset），再执行该主键范围内的语句，直到取不满一块
+     *
+     * @param sqlSupport SQL工具
+     * @param example    条件实体
+     * @param chunkSize  每块行数
+     * @param sqlBuilder (主键下界, 主键上界) -> 语句
+     * @param operation  操作名称（日志）
+     * @param <E>        实体类型
+     * @return 影响行数（各块之和）
+     */
+    private <E> Future<Integer> doBulk(EntitySQLSupport<E> sqlSupport, E example, int chunkSize,
+                                       BiFunction<Object, Object, String> sqlBuilder, String operation) {
+        if (chunkSize <= 0) {
+            return executeUpdate(example.getClass(), operation, sqlBuilder.apply(null, null), false).map(ur -> {
+                invalidate(sqlSupport, null, ur.getUpdated());
+                return ur.getUpdated();
+            });
+        }
+
+        Future<Integer> result = Future.future();
+        doBulkChunk(sqlSupport, example, chunkSize, sqlBuilder, operation, null, 0, result);
+        return result;
+    }
+
+    private <E> void doBulkChunk(EntitySQLSupport<E> sqlSupport, E example, int chunkSize,
+                                 BiFunction<Object, Object, String> sqlBuilder, String operation,
+                                 Object lower, int total, Future<Integer> result) {
+        String keySql = sqlSupport.buildChunkKeySql(example, lower, chunkSize);
+
+        doQuery(example.getClass(), keySql, null, keys -> {
+            if (keys.failed()) {
+                result.fail(keys.cause());
+                return;
+            }
+
+            List<JsonObject> rows = keys.result().getRows();
+            if (rows.isEmpty()) {
+                logger.info("{}: {} rows", operation, total);
+                result.complete(total);
+                return;
+            }
+
+            Object upper = rows.get(rows.size() - 1).getValue("pk");
+            attempt(() -> executeUpdate(example.getClass(), operation, sqlBuilder.apply(lower, upper), false)).setHandler(ar -> {
+                if (ar.failed()) {
+                    result.fail(ar.cause());
+                    return;
+                }
+
+                int updated = total + ar.result().getUpdated();
+                invalidate(sqlSupport, null, ar.result().getUpdated());
+
+                if (rows.size() < chunkSize) {
+                    logger.info("{}: {} rows", operation, updated);
+                    result.complete(updated);
+                } else {
+                    doBulkChunk(sqlSupport, example, chunkSize, sqlBuilder, operation, upper, updated, result);
+                }
+            });
+        });
+    }
+
+    /**
+     * 并行分块扫描（每块 1000 行，chunkHandler 同步处理）
+     *
+     * @param example      条件实体（非空字段为条件）
+     * @param parallelism  并行度（同时使用的连接数）
+     * @param chunkHandler 每块实体（按主键排序，不同范围的块交替到达）
+     * @param handler      扫描行数
+     * @param <E>          实体类型
+     */
+    @Override
+    public <E> void scan(E example, int parallelism, Handler<List<E>> chunkHandler, Handler<AsyncResult<Long>> handler) {
+        scan(example, parallelism, 1000, chunk -> {
+            chunkHandler.handle(chunk);
+            return Future.succeededFuture();
+        }, handler);
+    }
+
+    /**
+     * 并行分块扫描：整数主键时按 MIN / MAX 把主键切分为 parallelism 个范围，每个范围按主键分页（keyset）依次读取，
+     * 各范围同时进行；非整数主键时只有一个范围
+     * <p>
+     * chunkHandler 返回的 Future 完成后才读取该范围的下一块（背压），失败、抛出异常或返回 null 时停止扫描
+     *
+     * @param example      条件实体（非空字段为条件）
+     * @param parallelism  并行度（同时使用的连接数）
+     * @param chunkSize    每块行数
+     * @param chunkHandler 每块实体，返回处理完成的 Future
+     * @param handler      扫描行数
+     * @param <E>          实体类型
+     */
+    @Override
+    public <E> void scan(E example, int parallelism, int chunkSize, Function<List<E>, Future<Void>> chunkHandler,
+                         Handler<AsyncResult<Long>> handler) {
+        Scanner<E> scanner;
+        try {
+            scanner = new Scanner<>(example, Math.max(1, chunkSize), chunkHandler, handler);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        scanner.start(Math.max(1, parallelism));
+    }
+
+    /**
+     * 扫描状态
+     *
+     * @param <E> 实体类型
+     */
+    private class Scanner<E> {
+
+        private E example;
+
+        private Class<E> clazz;
+
+        private EntitySQLSupport<E> sqlSupport;
+
+        private int chunkSize;
+
+        private Function<List<E>, Future<Void>> chunkHandler;
+
+        private Handler<AsyncResult<Long>> handler;
+
+        private int running;
+
+        private long total;
+
+        private boolean finished;
+
+        private Scanner(E example, int chunkSize, Function<List<E>, Future<Void>> chunkHandler,
+                        Handler<AsyncResult<Long>> handler) {
+            this.example = example;
+            this.clazz = (Class<E>) example.getClass();
+            this.sqlSupport = EntitySQLSupport.of(clazz, dialect);
+            this.chunkSize = chunkSize;
+            this.chunkHandler = chunkHandler;
+            this.handler = handler;
+        }
+
+        private void start(int parallelism) {
+            if (parallelism == 1 || !sqlSupport.isIntegralPk()) {
+                running = 1;
+                next(null, null);
+                return;
+            }
+
+            String sql;
+            try {
+                sql = sqlSupport.buildPkRangeSql(example);
+            } catch (RuntimeException ex) {
+                fail(ex);
+                return;
+            }
+            logger.info("scan: {}", sql);
+
+            doQuery(clazz, sql, null, ar -> {
+                if (ar.failed()) {
+                    fail(ar.cause());
+                    return;
+                }
+
+                JsonObject range = ar.result().getRows().get(0);
+                if (range.getValue("min") == null) {
+                    complete();
+                    return;
+                }
+
+                long min = ((Number) range.getValue("min")).longValue();
+                long max = ((Number) range.getValue("max")).longValue();
+                long ranges = Math.min(parallelism, max - min + 1);
+                long width = (max - min + ranges) / ranges;
+
+                running = (int) ranges;
+                logger.info("scan: {} ranges of {} keys", ranges, width);
+                for (long i = 0; i < ranges; i++) {
+                    long lower = min - 1 + i * width;
+                    next(lower, Math.min(max, lower + width));
+                }
+            });
+        }
+
+        /**
+         * 读取范围内下一块
+         *
+         * @param lower 主键下界（不包含）
+         * @param upper 主键上界（包含）
+         */
+        private void next(Object lower, Object upper) {
+            if (finished) {
+                return;
+            }
+
+            String sql;
+            try {
+                sql = sqlSupport.buildScanSql(example, lower, upper, chunkSize);
+            } catch (RuntimeException ex) {
+                fail(ex);
+                return;
+            }
+            logger.debug("scan: {}", sql);
+
+            doQuery(clazz, sql, null, rs -> {
+                if (finished) {
+                    return;
+                }
+                if (rs.failed()) {
+                    fail(rs.cause());
+                    return;
+                }
+
+                List<E> elements;
+                Object last;
+                Future<Void> processed;
+                try {
+                    elements = convert(rs.result(), clazz);
+                    if (elements.isEmpty()) {
+                        rangeDone();
+                        return;
+                    }
+                    total += elements.size();
+
+                    last = sqlSupport.getPk(elements.get(elements.size() - 1));
+                    processed = chunkHandler.apply(elements);
+                } catch (RuntimeException ex) {
+                    fail(ex);
+                    return;
+                }
+                if (processed == null) {
+                    fail(new IllegalStateException("scan chunk handler returned null"));
+                    return;
+                }
+
+                processed.setHandler(ar -> {
+                    if (ar.failed()) {
+                        fail(ar.cause());
+                    } else if (elements.size() < chunkSize) {
+                        rangeDone();
+                    } else {
+                        next(last, upper);
+                    }
+                });
+            });
+        }
+
+        private void rangeDone() {
+            if (--running == 0) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (!finished) {
+                finished = true;
+                logger.info("scan: {} rows", total);
+                handler.handle(Future.succeededFuture(total));
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            if (!finished) {
+                finished = true;
+                logger.warn("scan failed after {} rows cause : {}", total, throwable.getMessage());
+                handler.handle(Future.failedFuture(throwable));
+            }
+        }
+    }
+
+    /**
+     * 流式导出：逐行读取查询结果写入 out，out 写队列满时暂停读取（不会关闭 out）
+     *
+     * @param example 条件实体（非空字段为条件）
+     * @param out     输出，例如 AsyncFile
+     * @param format  格式
+     * @param handler 导出行数
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void exportTo(E example, WriteStream<Buffer> out, DataFormat format, Handler<AsyncResult<Long>> handler) {
+        EntitySQLSupport<E> sqlSupport;
+        String sql;
+        try {
+            sqlSupport = EntitySQLSupport.of((Class<E>) example.getClass(), dialect);
+            sql = sqlSupport.buildSelectSql(example);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        logger.info("exportTo: {}", sql);
 
-        String sql = sqlSupport.buildInsertSql(e, false);
-        logger.info("insertSelective: {}", sql);
+        List<String> fields = sqlSupport.getFieldNames();
+        long[] count = {0};
+        doQueryStream(example.getClass(), sql, stream -> {
+            Buffer header = format.header(fields);
+            if (header != null) {
+                out.write(header);
+            }
+
+            stream.handler(row -> {
+                out.write(format.encode(fields, row));
+                count[0]++;
 
-        doUpdate(sql, ur -> {
-            sqlSupport.rewritePkValue(e, ur);
-            handler.handle(ur.getUpdated());
+                if (out.writeQueueFull()) {
+                    stream.pause();
+                    out.drainHandler(v -> stream.resume());
+                }
+            });
+        }, ar -> {
+            if (ar.succeeded()) {
+                logger.info("exportTo: {} rows", count[0]);
+                handler.handle(Future.succeededFuture(count[0]));
+            } else {
+                handler.handle(Future.failedFuture(ar.cause()));
+            }
         });
     }
 
+    /**
+     * 流式导入：逐行解析，每 batchSize 行一条多行 INSERT，插入期间暂停读取（主键按文件中的值写入）
+     *
+     * @param clazz     实体类型
+     * @param in        输入，例如 AsyncFile
+     * @param format    格式
+     * @param batchSize 每批行数
+     * @param handler   导入行数，解析或插入失败时为失败（已提交的批次不回滚）
+     * @param <E>       实体类型
+     */
+    @Override
+    public <E> void importFrom(Class<E> clazz, ReadStream<Buffer> in, DataFormat format, int batchSize,
+                               Handler<AsyncResult<Long>> handler) {
+        Importer<E> importer;
+        try {
+            importer = new Importer<>(EntitySQLSupport.of(clazz, dialect), in, format, Math.max(1, batchSize), handler);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        importer.start();
+    }
+
+    /**
+     * 导入状态：同一时间只有一个批次在插入，插入期间暂停输入（暂停前已读取的行进入下一批次）
+     * <p>
+     * RecordParser 不会交付结尾没有换行的最后一行，输入结束时补一个换行
+     *
+     * @param <E> 实体类型
+     */
+    private class Importer<E> {
+
+        private EntitySQLSupport<E> sqlSupport;
+
+        private ReadStream<Buffer> in;
+
+        private RecordParser parser;
+
+        /**
+         * 已读取的输入是否以换行结尾（没有未交付的行）
+         */
+        private boolean terminated = true;
+
+        private DataFormat.Decoder decoder;
+
+        private int batchSize;
+
+        private Handler<AsyncResult<Long>> handler;
+
+        private List<E> pending = new ArrayList<>();
+
+        private long total;
+
+        private boolean inFlight;
+
+        private boolean ended;
+
+        private boolean finished;
+
+        private Importer(EntitySQLSupport<E> sqlSupport, ReadStream<Buffer> in, DataFormat format, int batchSize,
+                         Handler<AsyncResult<Long>> handler) {
+            this.sqlSupport = sqlSupport;
+            this.in = in;
+            this.parser = RecordParser.newDelimited("\n", this::handleLine);
+            this.decoder = format.decoder();
+            this.batchSize = batchSize;
+            this.handler = handler;
+        }
+
+        private void start() {
+            in.exceptionHandler(this::fail);
+            in.endHandler(v -> {
+                if (!terminated) {
+                    parser.handle(Buffer.buffer("\n"));
+                }
+
+                ended = true;
+                if (!decoder.isComplete()) {
+                    fail(new RuntimeException("unexpected end of input, unterminated quoted value"));
+                    return;
+                }
+                next();
+            });
+            in.handler(buffer -> {
+                if (buffer.length() > 0) {
+                    terminated = buffer.getByte(buffer.length() - 1) == '\n';
+                }
+                parser.handle(buffer);
+            });
+        }
+
+        private void handleLine(Buffer line) {
+            if (finished) {
+                return;
+            }
+
+            try {
+                JsonObject row = decoder.decode(line.toString("UTF-8"));
+                if (row == null) {
+                    return;
+                }
+                pending.add(sqlSupport.fromRow(row));
+            } catch (RuntimeException ex) {
+                fail(ex);
+                return;
+            }
+
+            if (pending.size() >= batchSize) {
+                next();
+            }
+        }
+
+        /**
+         * 没有批次在插入时插入下一批，输入结束且没有剩余行时完成
+         */
+        private void next() {
+            if (inFlight || finished) {
+                return;
+            }
+
+            if (pending.isEmpty() || (!ended && pending.size() < batchSize)) {
+                if (ended) {
+                    finished = true;
+                    logger.info("importFrom: {} rows", total);
+                    handler.handle(Future.succeededFuture(total));
+                } else {
+                    in.resume();
+                }
+                return;
+            }
+
+            List<E> batch = pending.size() > batchSize ? new ArrayList<>(pending.subList(0, batchSize)) : pending;
+            pending = pending.size() > batchSize ? new ArrayList<>(pending.subList(batchSize, pending.size())) : new ArrayList<>();
+
+            inFlight = true;
+            in.pause();
+            doBatchInsert(batch, ar -> {
+                inFlight = false;
+                if (ar.failed()) {
+                    fail(ar.cause());
+                    return;
+                }
+
+                total += ar.result();
+                next();
+            });
+        }
+
+        private void fail(Throwable throwable) {
+            if (finished) {
+                return;
+            }
+
+            finished = true;
+            logger.warn("importFrom failed after {} rows cause : {}", total, throwable.getMessage());
+            handler.handle(Future.failedFuture(throwable));
+        }
+    }
+
     /**
      * 更新（NULL字段会忽略）
      *
@@ -199,13 +1140,8 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void updateSelective(E e, Handler<Integer> handler) {
-        EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of((Class<E>) e.getClass());
-
-        String sql = sqlSupport.buildUpdateSql(e, false);
-        logger.info("updateSelective: {}", sql);
-
-        doUpdate(sql, ur -> handler.handle(ur.getUpdated()));
+    public <E> void updateSelective(E e, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> updateEntity(e, false, "updateSelective")).setHandler(handler);
     }
 
     /**
@@ -217,8 +1153,12 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
      * @param <E>     实体类型
      */
     @Override
-    public <E> void select(E e, PageSupport<E> ps, Handler<PageSupport<E>> handler) {
-        selectCount(e, count -> {
+    public <E> void select(E e, PageSupport<E> ps, Handler<AsyncResult<PageSupport<E>>> handler) {
+        Class<E> clazz = (Class<E>) e.getClass();
+        Future<Long> total = Future.future();
+        selectCount(e, total);
+
+        total.compose(count -> {
             ps.setTotal(count);
 
             if (count == 0 || count <= ps.getStartRow()) {
@@ -226,21 +1166,145 @@ public class DefaultDaoImpl extends AbstractSQLConnectionSupport implements Simp
                 ps.setEndRow(0);
 
                 ps.setElements(new ArrayList<>());
-                handler.handle(ps);
-            } else {
-                String sql = EntitySQLSupport.of((Class<E>) e.getClass()).buildPageSql(e, ps.getStartRow(), ps.getSize(), ps.getOrderBy());
-                logger.info("select page: {}", sql);
+                return Future.succeededFuture(ps);
+            }
 
-                doQuery(sql, rs -> {
-                    List<E> elements = convert(rs, (Class<E>) e.getClass());
+            String sql = EntitySQLSupport.of(clazz, dialect).buildPageSql(e, ps.getStartRow(), ps.getSize(), ps.getOrderBy());
+            return executeQuery(clazz, "select page", sql).map(rs -> {
+                List<E> elements = track(convert(rs, clazz));
 
-                    ps.setCount(elements.size());
-                    ps.setEndRow(ps.getStartRow() + elements.size());
+                ps.setCount(elements.size());
+                ps.setEndRow(ps.getStartRow() + elements.size());
 
-                    ps.setElements(elements);
-                    handler.handle(ps);
-                });
+                ps.setElements(elements);
+                return ps;
+            });
+        }).setHandler(handler);
+    }
+
+    /**
+     * 新增（经过写缓冲，合并为多行 INSERT，不回写主键）
+     * <p>
+     * 需要在 jdbcConfig 的 write_behind 中配置实体类，例如
+     * "write_behind": {"com.example.Event": {"max_rows": 500, "max_delay": 50, "max_pending": 10000}}，
+     * 未配置时等同于 insertSelective
+     *
+     * @param e       实体
+     * @param handler 影响行数（所在批次提交后回调）
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void insertBuffered(E e, Handler<AsyncResult<Integer>> handler) {
+        WriteBehindBuffer<E> buffer = getWriteBehindBuffer((Class<E>) e.getClass());
+
+        if (buffer == null) {
+            insertSelective(e, handler);
+            return;
+        }
+
+        buffer.add(e, handler);
+    }
+
+    /**
+     * 获取实体类型的写缓冲（可用于 writeQueueFull / drainHandler 背压）
+     *
+     * @param clazz 实体类型
+     * @param <E>   实体类型
+     * @return 未配置时返回 null
+     */
+    public <E> WriteBehindBuffer<E> getWriteBehindBuffer(Class<E> clazz) {
+        JsonObject config = jdbcConfig.getJsonObject("write_behind");
+        if (config == null || !config.containsKey(clazz.getName())) {
+            return null;
+        }
+
+        return (WriteBehindBuffer<E>) writeBehindBuffers.computeIfAbsent(clazz.getName(),
+            name -> WriteBehindBuffer.of(vertx, clazz, config.getJsonObject(name), this::doBatchInsert));
+    }
+
+    /**
+     * 刷新所有写缓冲
+     *
+     * @param handler 完成后回调
+     */
+    public void flushWriteBehind(Handler<Void> handler) {
+        Collection<WriteBehindBuffer<?>> buffers = new ArrayList<>(writeBehindBuffers.values());
+        if (buffers.isEmpty()) {
+            handler.handle(null);
+            return;
+        }
+
+        int[] remaining = {buffers.size()};
+        buffers.forEach(buffer -> buffer.flush(v -> {
+            if (--remaining[0] == 0) {
+                handler.handle(null);
             }
-        });
+        }));
+    }
+
+    /**
+     * 配置了写缓冲时，在创建 DAO 的 Context 关闭（verticle undeploy）时刷新写缓冲，每个 DAO 只注册一次
+     */
+    private void registerFlushOnClose() {
+        Context context = Vertx.currentContext();
+        if (context != null && jdbcConfig.getJsonObject("write_behind") != null) {
+            context.addCloseHook(completion -> flushWriteBehind(v -> completion.handle(Future.succeededFuture())));
+        }
+    }
+
+    private <E> void doBatchInsert(List<E> items, Handler<AsyncResult<Integer>> handler) {
+        attempt(() -> {
+            Class<E> clazz = (Class<E>) items.get(0).getClass();
+            EntitySQLSupport<E> sqlSupport = EntitySQLSupport.of(clazz, dialect);
+
+            items.forEach(sqlSupport::initVersion);
+            return assignIds(sqlSupport, items).compose(v -> {
+                logger.info("insertBuffered: {} rows", items.size());
+
+                Future<UpdateResult> future = Future.future();
+                doUpdate(clazz, sqlSupport.buildBatchInsertSql(items), null, false, future);
+                return future;
+            }).map(ur -> {
+                invalidate(sqlSupport, null, ur.getUpdated());
+                return ur.getUpdated();
+            });
+        }).setHandler(handler);
+    }
+
+    /**
+     * 新增前为客户端生成的主键赋值，没有客户端生成器时直接完成
+     *
+     * @param sqlSupport SQL工具
+     * @param items      实体
+     * @param <E>        实体类型
+     * @return 赋值完成，生成失败时为失败
+     */
+    private <E> Future<Void> assignIds(EntitySQLSupport<E> sqlSupport, List<E> items) {
+        if (!sqlSupport.hasIdGenerators()) {
+            return Future.succeededFuture();
+        }
+
+        Future<Void> future = Future.future();
+        sqlSupport.assignIds(items, this::nextSequenceValue, future);
+        return future;
+    }
+
+    /**
+     * 取数据库序列的下一个值（池化序列生成器使用）
+     *
+     * @param sequence 序列名
+     * @param handler  下一个值
+     */
+    private void nextSequenceValue(String sequence, Handler<AsyncResult<Long>> handler) {
+        String sql = dialect.nextValueSql(sequence);
+        if (sql == null) {
+            handler.handle(Future.failedFuture(new UnsupportedOperationException(
+                "sequence is not supported by " + dialect.getName() + ", use snowflake, ulid or uuid7")));
+            return;
+        }
+
+        Future<ResultSet> next = Future.future();
+        doQuery(null, sql, null, next);
+        next.map(rs -> rs.getResults().get(0).getLong(0)).setHandler(handler);
     }
 }
@@ -1,14 +1,22 @@
 package com.mekki.vertx.dao.impl;
 
 import com.mekki.vertx.dao.TransactionalDao;
-import com.mekki.vertx.dao.support.exception.UnhandledException;
+import com.mekki.vertx.dao.support.Savepoint;
+import com.mekki.vertx.dao.support.TransactionMetrics;
+import com.mekki.vertx.dao.support.TransactionOptions;
+import com.mekki.vertx.dao.support.exception.TransactionTimeoutException;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.TransactionIsolation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Function;
+
 /**
  * Created by Mekki on 2018/3/23.
  * 支持事务的DAO层实现
@@ -19,12 +27,53 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
 
     private SQLConnection connection;
 
-    private TransactionalDaoImpl(Vertx vertx, JsonObject jdbcConfig) {
+    /**
+     * 保存点序号
+     */
+    private int savepointSeq;
+
+    /**
+     * 事务最长打开时间（毫秒），超过后由看门狗强制回滚并关闭，0 表示不限制
+     */
+    private long timeout;
+
+    private long watchdogTimerId = -1;
+
+    /**
+     * inTransaction 的结果，看门狗超时时使其失败（由 inTransaction 回滚并关闭），为空时看门狗直接回滚并关闭
+     */
+    private Handler<Throwable> timeoutHandler;
+
+    private boolean closed;
+
+    /**
+     * 是否有嵌套事务在执行（保存点是栈，同一时间只允许一个）
+     */
+    private boolean nestedRunning;
+
+    private TransactionOptions options;
+
+    /**
+     * 修改隔离级别前连接的隔离级别，关闭前恢复
+     */
+    private TransactionIsolation originalIsolation;
+
+    private TransactionalDaoImpl(Vertx vertx, JsonObject jdbcConfig, TransactionOptions options) {
         super(vertx, jdbcConfig);
 
+        this.options = options;
+        if (options.isReadOnly()) {
+            routeToReplica();
+        }
+
+        timeout = jdbcConfig.getJsonObject("transaction", new JsonObject()).getLong("timeout", 0L);
+
+        // 提交后才广播缓存失效，回滚时丢弃（回滚到保存点时保留，多失效不影响正确性）
+        getCacheInvalidator().setDeferred(true);
+
         super.defaultExceptionHandler = ex -> {
             rollback(ex);
-            throw new UnhandledException(ex);
+            reportUnhandled(ex);
         };
     }
 
@@ -33,10 +82,138 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
      *
      * @param vertx      Vert.x对象
      * @param jdbcConfig jdbc 配置
-     * @param handler    TransactionalDaoImpl 对象
+     * @param handler    TransactionalDaoImpl 对象，打开事务失败时为失败
      */
-    public static void createTransactional(Vertx vertx, JsonObject jdbcConfig, Handler<TransactionalDaoImpl> handler) {
-        new TransactionalDaoImpl(vertx, jdbcConfig).init(handler);
+    public static void createTransactional(Vertx vertx, JsonObject jdbcConfig,
+                                           Handler<AsyncResult<TransactionalDaoImpl>> handler) {
+        createTransactional(vertx, jdbcConfig, TransactionOptions.of(), handler);
+    }
+
+    /**
+     * 构造 TransactionalDaoImpl 对象
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param options    事务选项（隔离级别、只读）
+     * @param handler    TransactionalDaoImpl 对象，打开事务失败时为失败
+     */
+    public static void createTransactional(Vertx vertx, JsonObject jdbcConfig, TransactionOptions options,
+                                           Handler<AsyncResult<TransactionalDaoImpl>> handler) {
+        TransactionalDaoImpl dao;
+        try {
+            dao = new TransactionalDaoImpl(vertx, jdbcConfig, options);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        dao.init(handler);
+    }
+
+    /**
+     * 在事务中执行 block：block 返回的 future 成功时提交，失败（包括 block 中的回调抛出异常）时回滚，
+     * 无论结果如何都会关闭连接；事务打开超过 transaction.timeout 时回滚，结果为 TransactionTimeoutException
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param block      事务操作
+     * @param handler    事务结果
+     * @param <T>        结果类型
+     */
+    public static <T> void inTransaction(Vertx vertx, JsonObject jdbcConfig,
+                                         Function<TransactionalDaoImpl, Future<T>> block, Handler<AsyncResult<T>> handler) {
+        inTransaction(vertx, jdbcConfig, TransactionOptions.of(), block, handler);
+    }
+
+    /**
+     * 在事务中执行 block：block 返回的 future 成功时提交，失败（包括 block 中的回调抛出异常）时回滚，
+     * 无论结果如何都会关闭连接；事务打开超过 transaction.timeout 时回滚，结果为 TransactionTimeoutException
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @param options    事务选项（隔离级别、只读）
+     * @param block      事务操作
+     * @param handler    事务结果
+     * @param <T>        结果类型
+     */
+    public static <T> void inTransaction(Vertx vertx, JsonObject jdbcConfig, TransactionOptions options,
+                                         Function<TransactionalDaoImpl, Future<T>> block, Handler<AsyncResult<T>> handler) {
+        createTransactional(vertx, jdbcConfig, options, init -> {
+            if (init.failed()) {
+                handler.handle(Future.failedFuture(init.cause()));
+                return;
+            }
+
+            TransactionalDaoImpl tx = init.result();
+            Future<T> outcome = Future.future();
+            tx.defaultExceptionHandler = outcome::tryFail;
+            tx.timeoutHandler = outcome::tryFail;
+
+            outcome.setHandler(ar -> {
+                // 结果已经确定，之后回调抛出的异常不再影响事务
+                tx.defaultExceptionHandler = tx::reportUnhandled;
+                tx.finish(ar.succeeded(), finished -> {
+                    if (ar.failed()) {
+                        handler.handle(ar);
+                    } else if (finished.failed()) {
+                        handler.handle(Future.failedFuture(finished.cause()));
+                    } else {
+                        handler.handle(ar);
+                    }
+                });
+            });
+
+            try {
+                Future<T> future = block.apply(tx);
+                if (future == null) {
+                    outcome.tryFail(new IllegalStateException("transaction block returned null"));
+                } else {
+                    future.setHandler(ar -> {
+                        if (ar.succeeded()) {
+                            outcome.tryComplete(ar.result());
+                        } else {
+                            outcome.tryFail(ar.cause());
+                        }
+                    });
+                }
+            } catch (Exception ex) {
+                outcome.tryFail(ex);
+            }
+        });
+    }
+
+    /**
+     * 提交或回滚，然后关闭连接（提交失败时回滚）
+     *
+     * @param commit  是否提交
+     * @param handler 结果，提交失败时为失败
+     */
+    private void finish(boolean commit, Handler<AsyncResult<Void>> handler) {
+        if (closed) {
+            handler.handle(Future.failedFuture(new IllegalStateException("transaction already closed")));
+            return;
+        }
+
+        if (!commit) {
+            connection.rollback(ar -> {
+                TransactionMetrics.onRollback();
+                getCacheInvalidator().discard();
+                logger.info("rollback {}", connection.toString());
+                close(v -> handler.handle(ar));
+            });
+            return;
+        }
+
+        connection.commit(ar -> {
+            if (ar.succeeded()) {
+                TransactionMetrics.onCommit();
+                getCacheInvalidator().flush();
+                logger.info("commit {}", connection.toString());
+                close(v -> handler.handle(ar));
+            } else {
+                logger.warn("commit failed cause : {}", ar.cause().getMessage());
+                finish(false, v -> handler.handle(ar));
+            }
+        });
     }
 
     /**
@@ -55,22 +232,178 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
     /**
      * 加载sql连接并打开事务
      *
-     * @param handler TransactionalDaoImpl 对象
+     * @param handler TransactionalDaoImpl 对象，失败时为失败
      */
-    private void init(Handler<TransactionalDaoImpl> handler) {
-        super.getSQLConnection(connection -> {
-            this.connection = connection;
-            connection.setAutoCommit(false, resultHandler -> {
-                handler.handle(this);
+    private void init(Handler<AsyncResult<TransactionalDaoImpl>> handler) {
+        Handler<Throwable> failureHandler = ex -> handler.handle(Future.failedFuture(ex));
+        // 只有取连接和打开事务计入准入控制，事务内的语句在已持有的连接上执行，不再申请许可
+        admissionControl.admit(null, done -> super.getSQLConnection(connection -> {
+            Future<Void> isolation = Future.future();
+            setIsolation(connection, isolation);
+
+            isolation.compose(v -> {
+                Future<Void> autoCommit = Future.future();
+                connection.setAutoCommit(false, autoCommit);
+                return autoCommit;
+            }).compose(v -> {
+                Future<Void> readOnly = Future.future();
+                String readOnlySql = getDialect().readOnlySql();
+                if (options.isReadOnly() && readOnlySql != null) {
+                    connection.execute(readOnlySql, readOnly);
+                } else {
+                    readOnly.complete();
+                }
+                return readOnly;
+            }).setHandler(ar -> {
+                done.handle(ar.cause());
+                if (ar.failed()) {
+                    connection.close();
+                    failureHandler.handle(ar.cause());
+                    return;
+                }
+
+                this.connection = connection;
+                TransactionMetrics.onOpen();
+                startWatchdog();
+                logger.info("begin {} {}", options, connection.toString());
+                handleIfException(v -> handler.handle(Future.succeededFuture(this)));
             });
+        }, ex -> {
+            done.handle(ex);
+            failureHandler.handle(ex);
+        }), failureHandler);
+    }
+
+    /**
+     * 设置隔离级别，并记录原隔离级别
+     *
+     * @param connection SQL连接
+     * @param future     完成后回调
+     */
+    private void setIsolation(SQLConnection connection, Future<Void> future) {
+        if (options.getIsolation() == null) {
+            future.complete();
+            return;
+        }
+
+        connection.getTransactionIsolation(original -> {
+            if (original.failed()) {
+                future.fail(original.cause());
+                return;
+            }
+
+            originalIsolation = original.result();
+            if (originalIsolation == options.getIsolation()) {
+                future.complete();
+            } else {
+                connection.setTransactionIsolation(options.getIsolation(), future);
+            }
         });
     }
 
+    /**
+     * 恢复连接原来的隔离级别，避免影响连接池中的其他使用者
+     *
+     * @param connection SQL连接
+     * @param handler    完成后回调
+     */
+    private void restoreIsolation(SQLConnection connection, Handler<Void> handler) {
+        if (originalIsolation == null || originalIsolation == options.getIsolation()) {
+            handler.handle(null);
+            return;
+        }
+
+        connection.setTransactionIsolation(originalIsolation, ar -> {
+            if (ar.failed()) {
+                logger.warn("restore isolation {} failed cause : {}", originalIsolation, ar.cause().getMessage());
+            }
+            handler.handle(null);
+        });
+    }
+
+    /**
+     * 启动看门狗，事务打开超过 timeout 后强制回滚并关闭，inTransaction 的结果为 TransactionTimeoutException
+     */
+    private void startWatchdog() {
+        if (timeout <= 0) {
+            return;
+        }
+
+        watchdogTimerId = getVertx().setTimer(timeout, t -> {
+            watchdogTimerId = -1;
+            if (closed) {
+                return;
+            }
+
+            logger.warn("transaction open longer than {} ms, force rollback {}", timeout, connection.toString());
+            TransactionMetrics.onForcedRollback();
+            if (timeoutHandler != null) {
+                timeoutHandler.handle(new TransactionTimeoutException("transaction open longer than " + timeout + " ms"));
+            } else {
+                finish(false, ar -> {
+                });
+            }
+        });
+    }
+
+    /**
+     * 事务统计（打开、提交、回滚、强制回滚、当前活动数）
+     *
+     * @return
+     */
+    public static JsonObject metrics() {
+        return TransactionMetrics.snapshot();
+    }
+
+    /**
+     * 事务内的语句使用已经持有的连接，不再申请许可：打开事务时已经计入准入控制，
+     * 如果语句还要和等待连接的普通语句争抢许可，持有全部连接的事务都无法提交，连接也就无法归还
+     *
+     * @param entityClass     实体类型
+     * @param task            语句
+     * @param rejectedHandler 不会被调用
+     */
     @Override
-    protected void getSQLConnection(Handler<SQLConnection> handler) {
+    protected void admit(Class<?> entityClass, Handler<Handler<Throwable>> task, Handler<Throwable> rejectedHandler) {
+        task.handle(cause -> {
+        });
+    }
+
+    /**
+     * 使用事务连接，事务已经关闭时失败
+     *
+     * @param handler        SQL连接
+     * @param failureHandler 事务已经关闭时的回调
+     */
+    @Override
+    protected void getSQLConnection(Handler<SQLConnection> handler, Handler<Throwable> failureHandler) {
+        if (closed) {
+            failureHandler.handle(new IllegalStateException("transaction already closed"));
+            return;
+        }
         handler.handle(connection);
     }
 
+    /**
+     * 事务中不经过写缓冲，直接新增
+     *
+     * @param e       实体
+     * @param handler 影响行数
+     * @param <E>     实体类型
+     */
+    @Override
+    public <E> void insertBuffered(E e, Handler<AsyncResult<Integer>> handler) {
+        insertSelective(e, handler);
+    }
+
+    /**
+     * 事务中的语句失败后不能换连接重试
+     */
+    @Override
+    protected boolean canRetryStatement() {
+        return false;
+    }
+
     /**
      * 需要手动关闭
      *
@@ -83,45 +416,45 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
     /**
      * 提交事务
      *
-     * @param handler 完成后回调
+     * @param handler 完成后回调，失败时事务仍然打开
      */
     @Override
-    public void commit(Handler<Void> handler) {
+    public void commit(Handler<AsyncResult<Void>> handler) {
         getSQLConnection(connection -> {
             connection.commit(ar -> {
-                super.requireSucceed(ar);
-                logger.info("commit {}", connection.toString());
-                handler.handle(ar.result());
+                if (ar.failed()) {
+                    logger.warn("commit failed cause : {}", ar.cause().getMessage());
+                } else {
+                    TransactionMetrics.onCommit();
+                    getCacheInvalidator().flush();
+                    logger.info("commit {}", connection.toString());
+                }
+                handleIfException(v -> handler.handle(ar));
             });
-        });
+        }, ex -> handler.handle(Future.failedFuture(ex)));
     }
 
     /**
-     * 提交事务
+     * 提交事务（失败时交给异常处理回调）
      */
     public void commit() {
-        commit(c -> {
-        });
+        commit(reportFailure());
     }
 
     /**
-     * 提交事务并关闭链接
+     * 提交事务并关闭链接（失败时交给异常处理回调）
      */
     public void commitAndClose() {
-        commit(c -> {
-            close();
-        });
+        commitAndClose(reportFailure());
     }
 
     /**
-     * 提交事务并关闭链接
+     * 提交事务并关闭链接，提交失败时回滚
      *
-     * @param handler 完成后回调
+     * @param handler 完成后回调，提交失败时为失败
      */
-    public void commitAndClose(Handler<Void> handler) {
-        commit(c -> {
-            close(handler);
-        });
+    public void commitAndClose(Handler<AsyncResult<Void>> handler) {
+        finish(true, handler);
     }
 
     /**
@@ -130,42 +463,44 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
      * @param handler 完成后回调
      */
     @Override
-    public void rollback(Handler<Void> handler) {
+    public void rollback(Handler<AsyncResult<Void>> handler) {
         getSQLConnection(connection -> {
             connection.rollback(ar -> {
-                super.requireSucceed(ar);
-                logger.info("rollback {}", connection.toString());
-                handler.handle(ar.result());
+                TransactionMetrics.onRollback();
+                getCacheInvalidator().discard();
+                if (ar.failed()) {
+                    // 回滚失败时连接状态未知，直接关闭
+                    logger.warn("rollback failed cause : {}", ar.cause().getMessage());
+                    close();
+                } else {
+                    logger.info("rollback {}", connection.toString());
+                }
+                handleIfException(v -> handler.handle(ar));
             });
-        });
+        }, ex -> handler.handle(Future.failedFuture(ex)));
     }
 
     /**
-     * 回滚事务
+     * 回滚事务（失败时交给异常处理回调）
      */
     public void rollback() {
-        rollback(r -> {
-        });
+        rollback(reportFailure());
     }
 
     /**
-     * 提交事务并关闭链接
+     * 回滚事务并关闭链接（失败时交给异常处理回调）
      */
     public void rollbackAndClose() {
-        rollback(c -> {
-            close();
-        });
+        rollbackAndClose(reportFailure());
     }
 
     /**
-     * 提交事务并关闭链接
+     * 回滚事务并关闭链接
      *
      * @param handler 完成后回调
      */
-    public void rollbackAndClose(Handler<Void> handler) {
-        rollback(c -> {
-            close(handler);
-        });
+    public void rollbackAndClose(Handler<AsyncResult<Void>> handler) {
+        finish(false, handler);
     }
 
 
@@ -175,13 +510,12 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
      * @param throwable 异常
      */
     private void rollback(Throwable throwable) {
-        rollback(
-            ar -> {
-                close(h -> {
-                    logger.warn("auto rollback and close cause : {}", throwable.getMessage());
-                });
-            }
-        );
+        if (connection == null || closed) {
+            logger.warn("transaction not open, skip auto rollback cause : {}", throwable.getMessage());
+            return;
+        }
+
+        finish(false, ar -> logger.warn("auto rollback and close cause : {}", throwable.getMessage()));
     }
 
     /**
@@ -190,21 +524,155 @@ public class TransactionalDaoImpl extends DefaultDaoImpl implements Transactiona
      * @param handler 回调
      */
     @Override
-    public void close(Handler<Void> handler) {
-        getSQLConnection(connection -> {
+    public void close(Handler<AsyncResult<Void>> handler) {
+        if (closed) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        closed = true;
+        TransactionMetrics.onClose();
+        if (watchdogTimerId >= 0) {
+            getVertx().cancelTimer(watchdogTimerId);
+            watchdogTimerId = -1;
+        }
+
+        restoreIsolation(connection, r -> {
             connection.close(ar -> {
-                super.requireSucceed(ar);
-                logger.info("close {}", connection.toString());
-                handler.handle(null);
+                if (ar.failed()) {
+                    logger.warn("close {} failed cause : {}", connection.toString(), ar.cause().getMessage());
+                } else {
+                    logger.info("close {}", connection.toString());
+                }
+                handleIfException(v -> handler.handle(ar));
             });
         });
     }
 
     /**
-     * 关闭SQL连接
+     * 关闭SQL连接（失败时交给异常处理回调）
      */
     public void close() {
-        close(c -> {
+        close(reportFailure());
+    }
+
+    /**
+     * 创建保存点
+     *
+     * @param handler 保存点
+     */
+    @Override
+    public void savepoint(Handler<AsyncResult<Savepoint>> handler) {
+        Savepoint savepoint = Savepoint.of("sp_" + (++savepointSeq));
+
+        getSQLConnection(connection -> {
+            connection.execute("SAVEPOINT " + savepoint.getName(), ar -> {
+                if (ar.failed()) {
+                    handler.handle(Future.failedFuture(ar.cause()));
+                    return;
+                }
+
+                logger.info("savepoint {} {}", savepoint.getName(), connection.toString());
+                handleIfException(v -> handler.handle(Future.succeededFuture(savepoint)));
+            });
+        }, ex -> handler.handle(Future.failedFuture(ex)));
+    }
+
+    /**
+     * 回滚到保存点（保存点之前的操作保留，事务继续）
+     *
+     * @param savepoint 保存点
+     * @param handler   完成后回调
+     */
+    @Override
+    public void rollbackTo(Savepoint savepoint, Handler<AsyncResult<Void>> handler) {
+        getSQLConnection(connection -> {
+            connection.execute("ROLLBACK TO SAVEPOINT " + savepoint.getName(), ar -> {
+                if (ar.succeeded()) {
+                    logger.info("rollback to {} {}", savepoint.getName(), connection.toString());
+                }
+                handleIfException(v -> handler.handle(ar));
+            });
+        }, ex -> handler.handle(Future.failedFuture(ex)));
+    }
+
+    /**
+     * 释放保存点
+     *
+     * @param savepoint 保存点
+     * @param handler   完成后回调
+     */
+    @Override
+    public void releaseSavepoint(Savepoint savepoint, Handler<AsyncResult<Void>> handler) {
+        String sql = getDialect().releaseSavepointSql(savepoint.getName());
+        if (sql == null) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        getSQLConnection(connection -> {
+            connection.execute(sql, ar -> handleIfException(v -> handler.handle(ar)));
+        }, ex -> handler.handle(Future.failedFuture(ex)));
+    }
+
+    /**
+     * 嵌套事务：在保存点中执行 block，block 的 future 成功时释放保存点，失败（或 block 直接抛出异常）时
+     * 只回滚到保存点，外层事务不受影响；失败只由 block 的 future 决定
+     * <p>
+     * 回滚到较早的保存点会丢弃之后的保存点，所以同一时间只能执行一个嵌套事务：前一个结束前再次调用（包括在 block 内）
+     * 时 handler 为 IllegalStateException，block 不会执行；更深的嵌套直接使用 savepoint / rollbackTo
+     * <p>
+     * 创建、释放或回滚到保存点失败时 handler 为失败（回滚到保存点失败时外层事务不应再提交）
+     *
+     * @param block   操作，完成或失败 future
+     * @param handler 嵌套事务结果
+     * @param <T>     结果类型
+     */
+    @Override
+    public <T> void inTransaction(Handler<Future<T>> block, Handler<AsyncResult<T>> handler) {
+        if (nestedRunning) {
+            handler.handle(Future.failedFuture(new IllegalStateException(
+                "another nested transaction is running on " + this)));
+            return;
+        }
+        nestedRunning = true;
+
+        Handler<AsyncResult<T>> done = ar -> {
+            nestedRunning = false;
+            handler.handle(ar);
+        };
+        savepoint(created -> {
+            if (created.failed()) {
+                done.handle(Future.failedFuture(created.cause()));
+                return;
+            }
+
+            Savepoint savepoint = created.result();
+            Future<T> future = Future.future();
+
+            future.setHandler(ar -> {
+                if (ar.succeeded()) {
+                    releaseSavepoint(savepoint, released ->
+                        done.handle(released.failed() ? Future.failedFuture(released.cause()) : ar));
+                    return;
+                }
+
+                logger.warn("nested transaction rollback to {} cause : {}", savepoint.getName(), ar.cause().getMessage());
+                rollbackTo(savepoint, rolledBack -> {
+                    if (rolledBack.failed()) {
+                        rolledBack.cause().addSuppressed(ar.cause());
+                        done.handle(Future.failedFuture(rolledBack.cause()));
+                    } else {
+                        done.handle(ar);
+                    }
+                });
+            });
+
+            try {
+                block.handle(future);
+            } catch (Exception ex) {
+                future.tryFail(ex);
+            }
         });
     }
 }
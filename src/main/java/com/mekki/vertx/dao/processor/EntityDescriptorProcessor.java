@@ -0,0 +1,442 @@
+package com.mekki.vertx.dao.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by Mekki on 2018/4/15.
+ * 为 @Table / @Entity 实体生成 &lt;实体类名&gt;_Descriptor（EntityDescriptor 实现），
+ * 表名、列名和注解在编译期解析，字段通过直接访问或 getter/setter 读写
+ * <p>
+ * 私有字段且没有 getter/setter 时该字段在运行时仍使用反射
+ */
+public class EntityDescriptorProcessor extends AbstractProcessor {
+
+    private static final String TABLE = "javax.persistence.Table";
+
+    private static final String ENTITY = "javax.persistence.Entity";
+
+    private static final String ID = "javax.persistence.Id";
+
+    private static final String EMBEDDED_ID = "javax.persistence.EmbeddedId";
+
+    private static final String COLUMN = "javax.persistence.Column";
+
+    private static final String TRANSIENT = "javax.persistence.Transient";
+
+    private static final String GENERATED_VALUE = "javax.persistence.GeneratedValue";
+
+    private static final String VERSION = "javax.persistence.Version";
+
+    private static final String ENUMERATED = "javax.persistence.Enumerated";
+
+    private static final String CONVERT = "com.mekki.vertx.dao.support.convert.Convert";
+
+    private static final String SUFFIX = "_Descriptor";
+
+    private Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(TABLE, ENTITY));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+
+                TypeElement entity = (TypeElement) element;
+                if (!generated.add(entity.getQualifiedName().toString())) {
+                    continue;
+                }
+
+                if (!isAccessible(entity)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "entity is not accessible from its package, no descriptor generated", entity);
+                    continue;
+                }
+
+                if (ElementFilter.fieldsIn(entity.getEnclosedElements()).stream()
+                    .anyMatch(field -> findAnnotation(field, EMBEDDED_ID) != null)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "entity has @EmbeddedId, no descriptor generated", entity);
+                    continue;
+                }
+
+                try {
+                    generate(entity);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "cannot write entity descriptor: " + e.getMessage(), entity);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 实体类（以及外部类）在包内可见
+     *
+     * @param entity
+     * @return
+     */
+    private boolean isAccessible(TypeElement entity) {
+        Element element = entity;
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void generate(TypeElement entity) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String entityName = entity.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+            .replace('$', '_') + SUFFIX;
+
+        List<Column> columns = resolveColumns(entity);
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import com.mekki.vertx.dao.support.ColumnDescriptor;\n")
+            .append("import com.mekki.vertx.dao.support.EntityDescriptor;\n\n")
+            .append("import java.util.Arrays;\n")
+            .append("import java.util.Collections;\n")
+            .append("import java.util.List;\n\n")
+            .append("/**\n")
+            .append(" * Generated by EntityDescriptorProcessor, do not edit.\n")
+            .append(" */\n")
+            .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+            .append("public class ").append(simpleName).append(" implements EntityDescriptor<").append(entityName).append("> {\n\n");
+
+        sb.append("    private static final List<ColumnDescriptor> COLUMNS = Collections.unmodifiableList(Arrays.asList(\n");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            sb.append("        ColumnDescriptor.of(")
+                .append(literal(column.fieldName)).append(", ")
+                .append(literal(column.columnName)).append(", ")
+                .append(column.typeName).append(".class, ")
+                .append(column.flags()).append(", ")
+                .append(column.converter != null ? column.converter + ".class" : "null").append(", ")
+                .append(column.enumType != null ? "javax.persistence.EnumType." + column.enumType : "null").append(", ")
+                .append(column.hasAccessor()).append(")")
+                .append(i < columns.size() - 1 ? ",\n" : "\n");
+        }
+        sb.append("    ));\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public Class<").append(entityName).append("> getEntityClass() {\n")
+            .append("        return ").append(entityName).append(".class;\n")
+            .append("    }\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public String getTableName() {\n")
+            .append("        return ").append(literal(resolveTableName(entity))).append(";\n")
+            .append("    }\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public List<ColumnDescriptor> getColumns() {\n")
+            .append("        return COLUMNS;\n")
+            .append("    }\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public ").append(entityName).append(" newInstance() {\n")
+            .append("        return ").append(isInstantiable(entity) ? "new " + entityName + "()" : "null").append(";\n")
+            .append("    }\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public Object get(").append(entityName).append(" entity, int index) {\n")
+            .append("        switch (index) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column.hasAccessor()) {
+                sb.append("            case ").append(i).append(":\n")
+                    .append("                return entity.")
+                    .append(column.getter != null ? column.getter + "()" : column.fieldName).append(";\n");
+            }
+        }
+        sb.append("            default:\n")
+            .append("                throw new IllegalArgumentException(\"no accessor for column \" + index);\n")
+            .append("        }\n")
+            .append("    }\n\n");
+
+        sb.append("    @Override\n")
+            .append("    public void set(").append(entityName).append(" entity, int index, Object value) {\n")
+            .append("        switch (index) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column.hasAccessor()) {
+                String cast = "(" + column.castName + ") value";
+                sb.append("            case ").append(i).append(":\n")
+                    .append("                entity.")
+                    .append(column.setter != null ? column.setter + "(" + cast + ")" : column.fieldName + " = " + cast)
+                    .append(";\n")
+                    .append("                break;\n");
+            }
+        }
+        sb.append("            default:\n")
+            .append("                throw new IllegalArgumentException(\"no accessor for column \" + index);\n")
+            .append("        }\n")
+            .append("    }\n")
+            .append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, entity);
+        try (Writer writer = file.openWriter()) {
+            writer.write(sb.toString());
+        }
+    }
+
+    /**
+     * 字段（与 EntitySQLSupport 一致：本类声明的非静态、非 @Transient 字段）
+     *
+     * @param entity
+     * @return
+     */
+    private List<Column> resolveColumns(TypeElement entity) {
+        List<ExecutableElement> methods = ElementFilter.methodsIn(entity.getEnclosedElements());
+
+        List<Column> columns = new ArrayList<>();
+        boolean hasVersion = false;
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || findAnnotation(field, TRANSIENT) != null) {
+                continue;
+            }
+
+            Column column = new Column();
+            column.fieldName = field.getSimpleName().toString();
+
+            AnnotationMirror columnAnnotation = findAnnotation(field, COLUMN);
+            Object name = columnAnnotation != null ? annotationValue(columnAnnotation, "name") : null;
+            column.columnName = name != null && name.toString().length() > 0
+                ? name.toString() : camel2Underline(column.fieldName);
+
+            TypeMirror type = processingEnv.getTypeUtils().erasure(field.asType());
+            column.typeName = type.toString();
+            column.castName = type.getKind().isPrimitive()
+                ? processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString()
+                : column.typeName;
+
+            column.id = findAnnotation(field, ID) != null;
+            column.version = !hasVersion && !column.id && findAnnotation(field, VERSION) != null;
+            hasVersion |= column.version;
+            column.generated = findAnnotation(field, GENERATED_VALUE) != null;
+
+            AnnotationMirror convert = findAnnotation(field, CONVERT);
+            if (convert != null) {
+                Object value = annotationValue(convert, "value");
+                column.converter = value != null ? processingEnv.getTypeUtils().erasure((TypeMirror) value).toString() : null;
+            }
+
+            AnnotationMirror enumerated = findAnnotation(field, ENUMERATED);
+            if (enumerated != null) {
+                Object value = annotationValue(enumerated, "value");
+                column.enumType = value != null ? ((VariableElement) value).getSimpleName().toString() : "ORDINAL";
+            }
+
+            if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+                column.direct = true;
+            } else {
+                String capitalized = Character.toUpperCase(column.fieldName.charAt(0)) + column.fieldName.substring(1);
+                ExecutableElement getter = findMethod(methods, "get" + capitalized, null);
+                if (getter == null && type.getKind() == TypeKind.BOOLEAN) {
+                    getter = findMethod(methods, "is" + capitalized, null);
+                }
+                ExecutableElement setter = findMethod(methods, "set" + capitalized, field.asType());
+
+                if (getter != null && setter != null
+                    && processingEnv.getTypeUtils().isSameType(getter.getReturnType(), field.asType())) {
+                    column.getter = getter.getSimpleName().toString();
+                    column.setter = setter.getSimpleName().toString();
+                }
+            }
+
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    private ExecutableElement findMethod(List<ExecutableElement> methods, String name, TypeMirror parameterType) {
+        for (ExecutableElement method : methods) {
+            if (!method.getSimpleName().contentEquals(name)
+                || method.getModifiers().contains(Modifier.PRIVATE)
+                || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            if (parameterType == null) {
+                if (method.getParameters().isEmpty()) {
+                    return method;
+                }
+            } else if (method.getParameters().size() == 1
+                && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), parameterType)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 非抽象、非内部类且有非私有无参构造方法
+     *
+     * @param entity
+     * @return
+     */
+    private boolean isInstantiable(TypeElement entity) {
+        if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+
+        if (entity.getNestingKind() != NestingKind.TOP_LEVEL && !entity.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return false;
+    }
+
+    private String resolveTableName(TypeElement entity) {
+        AnnotationMirror table = findAnnotation(entity, TABLE);
+        Object name = table != null ? annotationValue(table, "name") : null;
+
+        if (name != null && name.toString().length() > 0) {
+            return name.toString();
+        }
+        return camel2Underline(entity.getSimpleName().toString());
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static Object annotationValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 驼峰转下划线（与 EntitySQLSupport 一致）
+     *
+     * @param camel
+     * @return
+     */
+    private static String camel2Underline(String camel) {
+        return camel.replaceAll("[A-Z]", "_$0").toLowerCase();
+    }
+
+    private static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static class Column {
+
+        private String fieldName;
+
+        private String columnName;
+
+        /**
+         * 字段类型（擦除后），用于 .class
+         */
+        private String typeName;
+
+        /**
+         * set 时的强制转换类型，基本类型使用包装类型
+         */
+        private String castName;
+
+        private boolean id;
+
+        private boolean generated;
+
+        private boolean version;
+
+        private String converter;
+
+        private String enumType;
+
+        private boolean direct;
+
+        private String getter;
+
+        private String setter;
+
+        private boolean hasAccessor() {
+            return direct || (getter != null && setter != null);
+        }
+
+        private String flags() {
+            List<String> flags = new ArrayList<>();
+            if (id) {
+                flags.add("ColumnDescriptor.ID");
+            }
+            if (generated) {
+                flags.add("ColumnDescriptor.GENERATED");
+            }
+            if (version) {
+                flags.add("ColumnDescriptor.VERSION");
+            }
+            return flags.isEmpty() ? "0" : String.join(" | ", flags);
+        }
+    }
+}
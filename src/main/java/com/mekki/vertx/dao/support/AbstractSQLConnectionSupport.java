@@ -1,11 +1,18 @@
 package com.mekki.vertx.dao.support;
 
+import com.mekki.vertx.dao.support.exception.CircuitBreakerOpenException;
 import com.mekki.vertx.dao.support.exception.UnhandledException;
+import com.mekki.vertx.dao.support.executor.SqlExecutor;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.ext.jdbc.impl.JDBCClientImpl;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
 import io.vertx.ext.sql.UpdateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,14 +24,58 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractSQLConnectionSupport {
 
     private static Logger logger = LoggerFactory.getLogger(AbstractSQLConnectionSupport.class);
-    protected Handler<Exception> defaultExceptionHandler = ex -> {
-        throw new UnhandledException(ex);
-    };
 
-    public abstract JDBCClientImpl getSqlClient();
+    /**
+     * 没有回调的操作（例如 commit()、close()）失败或者回调本身抛出异常时的处理，
+     * 未设置时交给 Vert.x 的异常处理（不在回调中抛出）
+     */
+    protected Handler<Exception> defaultExceptionHandler = this::reportUnhandled;
+
+    /**
+     * 重试策略
+     */
+    protected RetryPolicy retryPolicy = RetryPolicy.none();
+
+    /**
+     * 熔断器
+     */
+    protected CircuitBreaker circuitBreaker = CircuitBreaker.of(null);
 
     /**
-     * 设置异常处理
+     * 准入控制
+     */
+    protected AdmissionControl admissionControl = AdmissionControl.of(null);
+
+    /**
+     * 慢查询记录
+     */
+    protected SlowQueryLog slowQueryLog = SlowQueryLog.of(null, null);
+
+    public abstract SqlExecutor getSqlExecutor();
+
+    public abstract Vertx getVertx();
+
+    /**
+     * 准入控制状态（并发上限、执行中、排队中）
+     *
+     * @return
+     */
+    public JsonObject admissionStatus() {
+        return admissionControl.status();
+    }
+
+    /**
+     * 最近的慢查询（新的在前）
+     *
+     * @param limit 最多条数
+     * @return
+     */
+    public JsonArray slowQueries(int limit) {
+        return slowQueryLog.recent(limit);
+    }
+
+    /**
+     * 设置异常处理（操作的失败交给操作自己的回调，这里只处理没有回调的操作和回调抛出的异常）
      *
      * @param eh 异常处理回调
      */
@@ -33,20 +84,141 @@ public abstract class AbstractSQLConnectionSupport {
     }
 
     /**
-     * 获取Sql链接
+     * 获取Sql链接（失败时按重试策略重试）
      *
-     * @param handler
+     * @param handler        SQL连接
+     * @param failureHandler 最终获取失败时的回调
      */
-    protected void getSQLConnection(Handler<SQLConnection> handler) {
-        getSqlClient().getConnection(connectionHandler -> {
-            requireSucceed(connectionHandler);
-            SQLConnection connection = connectionHandler.result();
+    protected void getSQLConnection(Handler<SQLConnection> handler, Handler<Throwable> failureHandler) {
+        acquireSQLConnection(1, handler, failureHandler);
+    }
+
+    private void acquireSQLConnection(int attempt, Handler<SQLConnection> handler, Handler<Throwable> failureHandler) {
+        if (!circuitBreaker.allowRequest()) {
+            failureHandler.handle(new CircuitBreakerOpenException("circuit breaker is open, database considered unavailable"));
+            return;
+        }
+
+        getSqlExecutor().getConnection(connectionHandler -> {
+            if (connectionHandler.succeeded()) {
+                circuitBreaker.onSuccess();
+                SQLConnection connection = connectionHandler.result();
+
+                logger.info("establish : {}", connection.toString());
+                try {
+                    handler.handle(connection);
+                } catch (Exception ex) {
+                    closeSQLConnectionAfterExecute(connection);
+                    failureHandler.handle(ex);
+                }
+                return;
+            }
+
+            circuitBreaker.onFailure();
+            if (retryPolicy.tryAcquireRetry(attempt)) {
+                long delay = retryPolicy.delay(attempt);
+                logger.warn("get connection failed (attempt {}), retry in {} ms cause : {}",
+                    attempt, delay, connectionHandler.cause().getMessage());
 
-            logger.info("establish : {}", connection.toString());
-            handler.handle(connection);
+                getVertx().setTimer(delay, t -> acquireSQLConnection(attempt + 1, handler, failureHandler));
+            } else {
+                failureHandler.handle(connectionHandler.cause());
+            }
         });
     }
 
+    /**
+     * 交给异常处理回调（回调本身抛出的异常只记录日志）
+     *
+     * @param throwable 异常
+     */
+    protected void fail(Throwable throwable) {
+        Exception ex = throwable instanceof Exception ? (Exception) throwable : new UnhandledException(throwable);
+        try {
+            defaultExceptionHandler.handle(ex);
+        } catch (Exception handlerEx) {
+            logger.error("exception handler failed", handlerEx);
+        }
+    }
+
+    /**
+     * 没有回调的操作使用：失败时交给异常处理回调
+     *
+     * @param <T> 结果类型
+     * @return
+     */
+    protected <T> Handler<AsyncResult<T>> reportFailure() {
+        return ar -> {
+            if (ar.failed()) {
+                fail(ar.cause());
+            }
+        };
+    }
+
+    /**
+     * 没有设置异常处理时：依次交给当前 context、Vert.x 的异常处理，都没有时记录日志
+     *
+     * @param throwable 异常
+     */
+    protected void reportUnhandled(Throwable throwable) {
+        Context context = Vertx.currentContext();
+        Handler<Throwable> handler = context != null ? context.exceptionHandler() : null;
+        if (handler == null && getVertx() != null) {
+            handler = getVertx().exceptionHandler();
+        }
+
+        if (handler != null) {
+            handler.handle(new UnhandledException(throwable));
+        } else {
+            logger.error("unhandled exception, set one with onException", throwable);
+        }
+    }
+
+    /**
+     * 执行失败的语句是否可以重新获取连接后重试（事务中不能重试）
+     *
+     * @return
+     */
+    protected boolean canRetryStatement() {
+        return true;
+    }
+
+    /**
+     * 语句执行失败后是否需要重试，需要时关闭当前连接并在退避后执行 retry；只有连接类异常计入熔断
+     *
+     * @param idempotent 语句是否幂等
+     * @param attempt    已经尝试的次数
+     * @param ar         执行结果
+     * @param connection SQL连接
+     * @param retry      重试操作
+     * @return 是否已经安排重试
+     */
+    private boolean retryIfTransient(boolean idempotent, int attempt, AsyncResult<?> ar,
+                                     SQLConnection connection, Handler<Void> retry) {
+        if (ar.succeeded()) {
+            retryPolicy.onSuccess();
+            return false;
+        }
+
+        if (!RetryPolicy.isTransient(ar.cause())) {
+            return false;
+        }
+
+        if (RetryPolicy.isConnectionFailure(ar.cause())) {
+            circuitBreaker.onFailure();
+        }
+        if (!idempotent || !canRetryStatement() || !retryPolicy.tryAcquireRetry(attempt)) {
+            return false;
+        }
+
+        closeSQLConnectionAfterExecute(connection);
+
+        long delay = retryPolicy.delay(attempt);
+        logger.warn("statement failed (attempt {}), retry in {} ms cause : {}", attempt, delay, ar.cause().getMessage());
+        getVertx().setTimer(delay, t -> retry.handle(null));
+        return true;
+    }
+
     /**
      * 执行完操作关闭Sql链接
      *
@@ -54,7 +226,10 @@ public abstract class AbstractSQLConnectionSupport {
      */
     protected void closeSQLConnectionAfterExecute(SQLConnection connection) {
         connection.close(ar -> {
-            requireSucceed(ar);
+            if (ar.failed()) {
+                logger.warn("close {} failed cause : {}", connection.toString(), ar.cause().getMessage());
+                return;
+            }
             logger.info("auto close {}", connection.toString());
         });
     }
@@ -68,50 +243,217 @@ public abstract class AbstractSQLConnectionSupport {
         try {
             vh.handle(null);
         } catch (Exception ex) {
-            defaultExceptionHandler.handle(ex);
+            fail(ex);
         }
     }
 
 
     /**
-     * 使用SQL执行查询操作
+     * 语句的准入控制
      *
-     * @param sql     SQL
-     * @param handler 更新结果
+     * @param entityClass     实体类型，可以为空
+     * @param task            语句，参数为完成时的回调（失败原因，成功时为空）
+     * @param rejectedHandler 被拒绝时的回调
      */
-    protected void doQuery(String sql, Handler<ResultSet> handler) {
+    protected void admit(Class<?> entityClass, Handler<Handler<Throwable>> task, Handler<Throwable> rejectedHandler) {
+        admissionControl.admit(entityClass, task, rejectedHandler);
+    }
+
+    /**
+     * 使用SQL执行查询操作（查询是幂等的，瞬时失败会按重试策略重试）
+     *
+     * @param entityClass 实体类型（用于实体级别的准入控制），可以为空
+     * @param sql         SQL
+     * @param params      参数，为空时按普通SQL执行
+     * @param handler     查询结果，失败时为失败
+     */
+    protected void doQuery(Class<?> entityClass, String sql, JsonArray params, Handler<AsyncResult<ResultSet>> handler) {
+        SlowQueryLog.Timer timer = slowQueryLog.start(entityClass, sql, params);
+        Handler<Throwable> failureHandler = ex -> handler.handle(Future.failedFuture(ex));
+        admit(entityClass, done -> doQuery(sql, params, 1, timer, done, handler), failureHandler);
+    }
+
+    private void doQuery(String sql, JsonArray params, int attempt, SlowQueryLog.Timer timer, Handler<Throwable> done,
+                         Handler<AsyncResult<ResultSet>> handler) {
         getSQLConnection(connection -> {
-            connection.query(sql, asyncResult -> {
-                handleIfException(v -> {
-                    requireSucceed(asyncResult);
-                    handler.handle(asyncResult.result());
-                });
+            timer.acquired();
+            Handler<AsyncResult<ResultSet>> resultHandler = asyncResult -> {
+                timer.executed();
+                if (retryIfTransient(true, attempt, asyncResult, connection,
+                    v -> doQuery(sql, params, attempt + 1, timer, done, handler))) {
+                    return;
+                }
+
+                done.handle(asyncResult.cause());
                 closeSQLConnectionAfterExecute(connection);
-            });
+                handleIfException(v -> handler.handle(asyncResult));
+                explainIfSlow(sql, params, timer.finish(asyncResult.failed()));
+            };
+
+            if (params == null) {
+                connection.query(sql, resultHandler);
+            } else {
+                connection.queryWithParams(sql, params, resultHandler);
+            }
+        }, ex -> {
+            done.handle(ex);
+            handler.handle(Future.failedFuture(ex));
         });
     }
 
+    /**
+     * 流式查询，结束或失败时关闭连接
+     * <p>
+     * streamHandler 只设置行回调（可以 pause / resume），不要覆盖 endHandler / exceptionHandler
+     *
+     * @param entityClass   实体类型（用于实体级别的准入控制），可以为空
+     * @param sql           SQL
+     * @param streamHandler 行流
+     * @param endHandler    行流结束或失败时的回调
+     */
+    protected void doQueryStream(Class<?> entityClass, String sql, Handler<SQLRowStream> streamHandler,
+                                 Handler<AsyncResult<Void>> endHandler) {
+        Handler<Throwable> failureHandler = ex -> endHandler.handle(Future.failedFuture(ex));
+
+        admit(entityClass, done -> getSQLConnection(connection ->
+            connection.queryStream(sql, ar -> {
+                if (ar.failed()) {
+                    done.handle(ar.cause());
+                    closeSQLConnectionAfterExecute(connection);
+                    failureHandler.handle(ar.cause());
+                    return;
+                }
+
+                SQLRowStream stream = ar.result();
+                stream.exceptionHandler(ex -> {
+                    done.handle(ex);
+                    closeSQLConnectionAfterExecute(connection);
+                    failureHandler.handle(ex);
+                });
+                stream.endHandler(v -> {
+                    done.handle(null);
+                    stream.close(c -> {
+                        closeSQLConnectionAfterExecute(connection);
+                        endHandler.handle(Future.succeededFuture());
+                    });
+                });
+
+                try {
+                    streamHandler.handle(stream);
+                } catch (Exception ex) {
+                    done.handle(ex);
+                    stream.close(c -> closeSQLConnectionAfterExecute(connection));
+                    failureHandler.handle(ex);
+                }
+            }), ex -> {
+            done.handle(ex);
+            failureHandler.handle(ex);
+        }), failureHandler);
+    }
+
     /**
      * 使用SQL执行更新操作
      *
-     * @param sql     SQL
-     * @param handler 更新结果
+     * @param entityClass 实体类型（用于实体级别的准入控制），可以为空
+     * @param sql         SQL
+     * @param params      参数，为空时按普通SQL执行
+     * @param idempotent  语句是否幂等（幂等语句瞬时失败会按重试策略重试）
+     * @param handler     更新结果，失败时为失败
      */
-    protected void doUpdate(String sql, Handler<UpdateResult> handler) {
+    protected void doUpdate(Class<?> entityClass, String sql, JsonArray params, boolean idempotent,
+                            Handler<AsyncResult<UpdateResult>> handler) {
+        SlowQueryLog.Timer timer = slowQueryLog.start(entityClass, sql, params);
+        Handler<Throwable> failureHandler = ex -> handler.handle(Future.failedFuture(ex));
+        admit(entityClass, done -> doUpdate(sql, params, idempotent, 1, timer, done, handler), failureHandler);
+    }
+
+    private void doUpdate(String sql, JsonArray params, boolean idempotent, int attempt, SlowQueryLog.Timer timer,
+                          Handler<Throwable> done, Handler<AsyncResult<UpdateResult>> handler) {
         getSQLConnection(connection -> {
-            connection.update(sql, asyncResult -> {
-                handleIfException(v -> {
-                    requireSucceed(asyncResult);
-                    handler.handle(asyncResult.result());
-                });
+            timer.acquired();
+            Handler<AsyncResult<UpdateResult>> resultHandler = asyncResult -> {
+                timer.executed();
+                if (retryIfTransient(idempotent, attempt, asyncResult, connection,
+                    v -> doUpdate(sql, params, idempotent, attempt + 1, timer, done, handler))) {
+                    return;
+                }
+
+                done.handle(asyncResult.cause());
                 closeSQLConnectionAfterExecute(connection);
-            });
+                handleIfException(v -> handler.handle(asyncResult));
+                explainIfSlow(sql, params, timer.finish(asyncResult.failed()));
+            };
+
+            if (params == null) {
+                connection.update(sql, resultHandler);
+            } else {
+                connection.updateWithParams(sql, params, resultHandler);
+            }
+        }, ex -> {
+            done.handle(ex);
+            handler.handle(Future.failedFuture(ex));
         });
     }
 
-    protected <T> void requireSucceed(AsyncResult<T> asyncResult) {
-        if (!asyncResult.succeeded()) {
-            throw new RuntimeException(asyncResult.cause());
+    /**
+     * 获取执行计划的语句
+     *
+     * @param sql SQL
+     * @return
+     */
+    protected String explainSql(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    /**
+     * 为慢查询异步获取执行计划（使用单独的连接，不占用事务连接）
+     * <p>
+     * 执行计划可以放弃：熔断器未关闭或没有空闲的准入许可时不获取（不排队），取连接的结果计入熔断器
+     *
+     * @param sql    SQL
+     * @param params 参数，可以为空
+     * @param entry  慢查询记录，为空时不处理
+     */
+    private void explainIfSlow(String sql, JsonArray params, JsonObject entry) {
+        if (entry == null || !slowQueryLog.isExplain()) {
+            return;
+        }
+
+        if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            slowQueryLog.attachPlan(entry, null, "explain skipped, circuit breaker is " + circuitBreaker.getState());
+            return;
+        }
+
+        boolean admitted = admissionControl.tryAdmit(done -> getSqlExecutor().getConnection(connectionHandler -> {
+            if (connectionHandler.failed()) {
+                circuitBreaker.onFailure();
+                done.handle(connectionHandler.cause());
+                slowQueryLog.attachPlan(entry, null, connectionHandler.cause().getMessage());
+                return;
+            }
+            circuitBreaker.onSuccess();
+
+            SQLConnection connection = connectionHandler.result();
+            Handler<AsyncResult<ResultSet>> planHandler = ar -> {
+                connection.close();
+                done.handle(ar.cause());
+                if (ar.succeeded()) {
+                    slowQueryLog.attachPlan(entry, new JsonArray(ar.result().getRows()), null);
+                } else {
+                    logger.debug("explain failed : {}", ar.cause().getMessage());
+                    slowQueryLog.attachPlan(entry, null, ar.cause().getMessage());
+                }
+            };
+
+            if (params == null) {
+                connection.query(explainSql(sql), planHandler);
+            } else {
+                connection.queryWithParams(explainSql(sql), params, planHandler);
+            }
+        }));
+
+        if (!admitted) {
+            slowQueryLog.attachPlan(entry, null, "explain skipped, no admission permit available");
         }
     }
 }
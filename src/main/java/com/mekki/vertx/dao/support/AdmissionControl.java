@@ -0,0 +1,186 @@
+package com.mekki.vertx.dao.support;
+
+import com.mekki.vertx.dao.support.exception.RejectedException;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Mekki on 2018/4/3.
+ * 数据源级别与实体级别的准入控制
+ * <p>
+ * jdbcConfig 中的配置示例：
+ * <pre>
+ * "admission": {
+ *     "max_concurrency": 64,
+ *     "max_queue": 256,
+ *     "adaptive": true,
+ *     "entities": {
+ *         "com.example.User": {"max_concurrency": 8, "max_queue": 16}
+ *     }
+ * }
+ * </pre>
+ * 同一数据源的 DAO（包括每个事务的 TransactionalDaoImpl）共用一个准入控制，配置以第一次创建时为准；
+ * 自适应且未配置 max_concurrency 时上限取连接池大小
+ */
+public class AdmissionControl {
+
+    private static final Map<String, AdmissionControl> CONTROLS = new ConcurrentHashMap<>();
+
+    private static final AdmissionControl DISABLED = new AdmissionControl(null, 0);
+
+    private ConcurrencyLimiter daoLimiter;
+
+    private Map<String, ConcurrencyLimiter> entityLimiters = new HashMap<>();
+
+    private boolean enabled;
+
+    private AdmissionControl(JsonObject config, int poolSize) {
+        enabled = config != null;
+
+        if (config == null) {
+            return;
+        }
+
+        daoLimiter = ConcurrencyLimiter.of("dao", config, poolSize);
+
+        JsonObject entities = config.getJsonObject("entities", new JsonObject());
+        entities.forEach(entry -> entityLimiters.put(entry.getKey(),
+            ConcurrencyLimiter.of(entry.getKey(), (JsonObject) entry.getValue(), poolSize)));
+    }
+
+    /**
+     * 构造准入控制
+     *
+     * @param config 配置，为空时不做限制
+     * @return
+     */
+    public static AdmissionControl of(JsonObject config) {
+        return config != null ? new AdmissionControl(config, 0) : DISABLED;
+    }
+
+    /**
+     * 获取数据源共用的准入控制
+     *
+     * @param dataSource 数据源标识
+     * @param config     配置，为空时不做限制（不共用）
+     * @param poolSize   连接池大小，自适应且未配置 max_concurrency 时作为上限，0 表示未知
+     * @return
+     */
+    public static AdmissionControl shared(String dataSource, JsonObject config, int poolSize) {
+        if (config == null) {
+            return DISABLED;
+        }
+        return CONTROLS.computeIfAbsent(dataSource, key -> new AdmissionControl(config, poolSize));
+    }
+
+    /**
+     * 先申请实体级别许可，再申请数据源级别许可，全部获得后执行操作
+     *
+     * @param entityClass     实体类型，可以为空
+     * @param task            操作，参数为操作完成时的回调（失败原因，成功时为空）
+     * @param rejectedHandler 被拒绝时的回调
+     */
+    public void admit(Class<?> entityClass, Handler<Handler<Throwable>> task, Handler<Throwable> rejectedHandler) {
+        if (!enabled) {
+            task.handle(cause -> {
+            });
+            return;
+        }
+
+        ConcurrencyLimiter entityLimiter = entityClass != null ? entityLimiters.get(entityClass.getName()) : null;
+
+        if (entityLimiter == null) {
+            admit(daoLimiter, task, rejectedHandler);
+            return;
+        }
+
+        admit(entityLimiter, entityDone -> admit(daoLimiter, daoDone -> task.handle(cause -> {
+            daoDone.handle(cause);
+            entityDone.handle(cause);
+        }), ex -> {
+            entityDone.handle(ex);
+            rejectedHandler.handle(ex);
+        }), rejectedHandler);
+    }
+
+    /**
+     * 有空闲的数据源级别许可时执行操作，否则不执行也不排队（用于可以放弃的辅助语句）
+     *
+     * @param task 操作，参数为操作完成时的回调（失败原因，成功时为空）
+     * @return 是否执行
+     */
+    public boolean tryAdmit(Handler<Handler<Throwable>> task) {
+        if (!enabled) {
+            task.handle(cause -> {
+            });
+            return true;
+        }
+
+        if (!daoLimiter.tryAcquire()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        task.handle(cause -> daoLimiter.release(System.nanoTime() - start, isOverload(cause)));
+        return true;
+    }
+
+    private void admit(ConcurrencyLimiter limiter, Handler<Handler<Throwable>> task, Handler<Throwable> rejectedHandler) {
+        boolean accepted = limiter.acquire(v -> {
+            long start = System.nanoTime();
+            task.handle(cause -> limiter.release(System.nanoTime() - start, isOverload(cause)));
+        });
+
+        if (!accepted) {
+            rejectedHandler.handle(new RejectedException(limiter.getName() + " rejected: " + limiter.getInFlight()
+                + " in flight, " + limiter.getQueued() + " queued"));
+        }
+    }
+
+    /**
+     * 是否为过载信号：语句或取连接超时、连接异常、下游被拒绝；约束冲突、语法错误等不算
+     *
+     * @param cause 失败原因，可以为空
+     * @return
+     */
+    static boolean isOverload(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof SQLTimeoutException || t instanceof SQLTransientConnectionException
+                || t instanceof RejectedException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return cause != null && RetryPolicy.isConnectionFailure(cause);
+    }
+
+    /**
+     * 当前状态
+     *
+     * @return
+     */
+    public JsonObject status() {
+        JsonObject status = new JsonObject();
+        if (!enabled) {
+            return status;
+        }
+
+        status.put("dao", status(daoLimiter));
+        entityLimiters.forEach((name, limiter) -> status.put(name, status(limiter)));
+        return status;
+    }
+
+    private static JsonObject status(ConcurrencyLimiter limiter) {
+        return new JsonObject()
+            .put("limit", limiter.getLimit())
+            .put("in_flight", limiter.getInFlight())
+            .put("queued", limiter.getQueued());
+    }
+}
@@ -0,0 +1,68 @@
+package com.mekki.vertx.dao.support;
+
+import com.mekki.vertx.dao.support.convert.TypeConverters;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Created by Mekki on 2018/4/16.
+ * 聚合查询结果行：分组字段按字段名、聚合值按别名读取
+ */
+@SuppressWarnings("unchecked")
+public class AggregateRow {
+
+    private Map<String, Object> values;
+
+    private AggregateRow(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * 构造结果行
+     *
+     * @param values 字段名/别名 -> 值
+     * @return
+     */
+    public static AggregateRow of(Map<String, Object> values) {
+        return new AggregateRow(values);
+    }
+
+    /**
+     * 值（分组字段和 MIN / MAX 已按字段类型转换）
+     *
+     * @param name 字段名或别名
+     * @param <V>  值类型
+     * @return
+     */
+    public <V> V get(String name) {
+        return (V) values.get(name);
+    }
+
+    public Long getLong(String name) {
+        Object value = values.get(name);
+        return value != null ? TypeConverters.toNumber(value).longValue() : null;
+    }
+
+    public Double getDouble(String name) {
+        Object value = values.get(name);
+        return value != null ? TypeConverters.toNumber(value).doubleValue() : null;
+    }
+
+    public BigDecimal getBigDecimal(String name) {
+        Object value = values.get(name);
+        if (value == null || value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
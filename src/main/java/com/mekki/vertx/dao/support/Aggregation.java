@@ -0,0 +1,147 @@
+package com.mekki.vertx.dao.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/16.
+ * 聚合查询定义（字段使用实体字段名，结果按别名读取）
+ * <p>
+ * Aggregation.of().groupBy("status").count("total").sum("amount", "amount").max("created", "latest")
+ */
+public class Aggregation {
+
+    private List<Aggregate> aggregates = new ArrayList<>();
+
+    private List<String> groupBy = new ArrayList<>();
+
+    private Aggregation() {
+    }
+
+    /**
+     * 构造聚合查询
+     *
+     * @return
+     */
+    public static Aggregation of() {
+        return new Aggregation();
+    }
+
+    /**
+     * COUNT(*)
+     *
+     * @param alias 别名
+     * @return
+     */
+    public Aggregation count(String alias) {
+        return add("COUNT", null, alias);
+    }
+
+    /**
+     * COUNT(字段)，不统计NULL
+     *
+     * @param field 字段名
+     * @param alias 别名
+     * @return
+     */
+    public Aggregation count(String field, String alias) {
+        return add("COUNT", field, alias);
+    }
+
+    public Aggregation sum(String field, String alias) {
+        return add("SUM", field, alias);
+    }
+
+    public Aggregation avg(String field, String alias) {
+        return add("AVG", field, alias);
+    }
+
+    /**
+     * MIN(字段)，结果按字段类型转换
+     *
+     * @param field 字段名
+     * @param alias 别名
+     * @return
+     */
+    public Aggregation min(String field, String alias) {
+        return add("MIN", field, alias);
+    }
+
+    /**
+     * MAX(字段)，结果按字段类型转换
+     *
+     * @param field 字段名
+     * @param alias 别名
+     * @return
+     */
+    public Aggregation max(String field, String alias) {
+        return add("MAX", field, alias);
+    }
+
+    /**
+     * 分组字段，结果中按字段名读取
+     *
+     * @param fields 字段名
+     * @return
+     */
+    public Aggregation groupBy(String... fields) {
+        groupBy.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    private Aggregation add(String function, String field, String alias) {
+        aggregates.add(new Aggregate(function, field, alias));
+        return this;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * 聚合函数
+     */
+    public static class Aggregate {
+
+        private String function;
+
+        /**
+         * 字段名，COUNT(*) 时为空
+         */
+        private String field;
+
+        private String alias;
+
+        private Aggregate(String function, String field, String alias) {
+            this.function = function;
+            this.field = field;
+            this.alias = alias;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * 结果是否与字段类型相同（MIN / MAX）
+         *
+         * @return
+         */
+        public boolean isFieldTyped() {
+            return "MIN".equals(function) || "MAX".equals(function);
+        }
+    }
+}
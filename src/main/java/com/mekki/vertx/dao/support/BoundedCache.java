@@ -0,0 +1,57 @@
+package com.mekki.vertx.dao.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Created by Mekki on 2018/4/9.
+ * 有界 LRU 缓存（线程安全）
+ */
+public class BoundedCache<K, V> {
+
+    private Map<K, V> cache;
+
+    private BoundedCache(int maxSize) {
+        cache = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 构造缓存
+     *
+     * @param maxSize 最大条目数，超过时淘汰最久未使用的条目
+     * @return
+     */
+    public static <K, V> BoundedCache<K, V> of(int maxSize) {
+        return new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * 获取，不存在时计算并放入缓存
+     *
+     * @param key      键
+     * @param function 计算函数
+     * @return
+     */
+    public synchronized V computeIfAbsent(K key, Function<K, V> function) {
+        V value = cache.get(key);
+        if (value == null) {
+            value = function.apply(key);
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,170 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by Mekki on 2018/4/16.
+ * 写操作成功后在 event bus 上广播缓存失效消息，同一 tick 内的失效合并为一条消息：
+ * {"user_t": ["1", "2"], "event_t": []}，空数组表示整表失效
+ * <p>
+ * 配置："invalidation": {"address": "vertx.dao.invalidation", "max_keys": 256}，未配置时不广播
+ */
+public class CacheInvalidator {
+
+    private static Logger logger = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    public static final String DEFAULT_ADDRESS = "vertx.dao.invalidation";
+
+    private static final CacheInvalidator DISABLED = new CacheInvalidator(null, null, 0);
+
+    private Vertx vertx;
+
+    private String address;
+
+    /**
+     * 每张表每条消息最多的主键数，超过时改为整表失效
+     */
+    private int maxKeys;
+
+    /**
+     * 待广播的失效，key 为表名，value 为空集合时表示整表失效
+     */
+    private Map<String, Set<String>> pending = new HashMap<>();
+
+    /**
+     * 暂缓广播（事务提交前）
+     */
+    private boolean deferred;
+
+    private boolean scheduled;
+
+    private CacheInvalidator(Vertx vertx, String address, int maxKeys) {
+        this.vertx = vertx;
+        this.address = address;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * 构造失效广播
+     *
+     * @param vertx  Vert.x对象
+     * @param config invalidation 配置，可以为空（不广播）
+     * @return
+     */
+    public static CacheInvalidator of(Vertx vertx, JsonObject config) {
+        if (config == null) {
+            return DISABLED;
+        }
+
+        return new CacheInvalidator(vertx, config.getString("address", DEFAULT_ADDRESS), config.getInteger("max_keys", 256));
+    }
+
+    /**
+     * 订阅失效消息
+     *
+     * @param vertx   Vert.x对象
+     * @param address 地址
+     * @param handler 失效消息，key 为表名，value 为主键数组（空数组表示整表失效）
+     * @return
+     */
+    public static MessageConsumer<JsonObject> subscribe(Vertx vertx, String address, Handler<JsonObject> handler) {
+        return vertx.eventBus().consumer(address, message -> handler.handle(message.body()));
+    }
+
+    public boolean isEnabled() {
+        return vertx != null;
+    }
+
+    /**
+     * 记录一行失效
+     *
+     * @param table 表名
+     * @param pk    主键值，为空时整表失效
+     */
+    public synchronized void invalidate(String table, Object pk) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Set<String> keys = pending.get(table);
+        if (keys == null) {
+            keys = new LinkedHashSet<>();
+            pending.put(table, keys);
+            if (pk != null) {
+                keys.add(pk.toString());
+            }
+        } else if (!keys.isEmpty()) {
+            if (pk == null || keys.size() >= maxKeys) {
+                keys.clear();
+            } else {
+                keys.add(pk.toString());
+            }
+        }
+
+        schedule();
+    }
+
+    /**
+     * 设置是否暂缓广播，取消暂缓时立即安排广播
+     *
+     * @param deferred 是否暂缓
+     */
+    public synchronized void setDeferred(boolean deferred) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        this.deferred = deferred;
+        schedule();
+    }
+
+    /**
+     * 立即广播所有待广播的失效
+     */
+    public void flush() {
+        JsonObject message;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            message = new JsonObject();
+            pending.forEach((table, keys) -> message.put(table, new JsonArray(new ArrayList<>(keys))));
+            pending.clear();
+        }
+
+        logger.debug("invalidate {}", message);
+        vertx.eventBus().publish(address, message);
+    }
+
+    /**
+     * 丢弃待广播的失效（事务回滚）
+     */
+    public synchronized void discard() {
+        pending.clear();
+    }
+
+    private void schedule() {
+        if (deferred || scheduled || pending.isEmpty()) {
+            return;
+        }
+
+        scheduled = true;
+        Context context = vertx.getOrCreateContext();
+        context.runOnContext(v -> flush());
+    }
+}
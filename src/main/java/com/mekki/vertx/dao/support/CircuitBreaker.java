@@ -0,0 +1,151 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Mekki on 2018/4/2.
+ * 熔断器，数据库不可用时快速失败
+ * <p>
+ * jdbcConfig 中的配置示例：
+ * <pre>
+ * "circuit_breaker": {
+ *     "failure_threshold": 5,
+ *     "reset_timeout": 5000
+ * }
+ * </pre>
+ * 同一数据源的 DAO（包括每个事务的 TransactionalDaoImpl）共用一个熔断器，配置以第一次创建时为准
+ */
+public class CircuitBreaker {
+
+    private static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 连续失败多少次后打开，0 表示不启用
+     */
+    private int failureThreshold;
+
+    /**
+     * 打开后多久进入半开状态（毫秒）
+     */
+    private long resetTimeout;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    /**
+     * 半开状态下是否已经放行了一个试探请求
+     */
+    private boolean trialInFlight;
+
+    private CircuitBreaker(JsonObject config) {
+        failureThreshold = config.getInteger("failure_threshold", 0);
+        resetTimeout = config.getLong("reset_timeout", 5000L);
+    }
+
+    /**
+     * 构造熔断器
+     *
+     * @param config 熔断配置，为空时不启用
+     * @return
+     */
+    public static CircuitBreaker of(JsonObject config) {
+        return new CircuitBreaker(config != null ? config : new JsonObject());
+    }
+
+    /**
+     * 获取数据源共用的熔断器
+     *
+     * @param dataSource 数据源标识
+     * @param config     熔断配置，为空时不启用（不共用）
+     * @return
+     */
+    public static CircuitBreaker shared(String dataSource, JsonObject config) {
+        if (config == null) {
+            return of(null);
+        }
+        return BREAKERS.computeIfAbsent(dataSource, key -> of(config));
+    }
+
+    /**
+     * 是否放行请求
+     *
+     * @return
+     */
+    public synchronized boolean allowRequest() {
+        if (failureThreshold <= 0) {
+            return true;
+        }
+
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < resetTimeout) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                logger.info("circuit half open");
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 记录成功
+     */
+    public synchronized void onSuccess() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+
+        if (state != State.CLOSED) {
+            logger.info("circuit closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * 记录失败
+     */
+    public synchronized void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warn("circuit open after {} failures", failures);
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,287 @@
+package com.mekki.vertx.dao.support;
+
+import com.mekki.vertx.dao.support.convert.TypeConverter;
+import com.mekki.vertx.dao.support.convert.TypeConverters;
+import com.mekki.vertx.dao.support.id.IdGenerator;
+import com.mekki.vertx.dao.support.id.IdGenerators;
+
+import javax.persistence.GeneratedValue;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Created by Mekki on 2018/4/10.
+ * 字段 <-> 数据库列 绑定（转换器在构造时解析一次），字段通过生成的实体描述或反射访问
+ */
+@SuppressWarnings("unchecked")
+public class ColumnBinding {
+
+    /**
+     * 反射访问的字段，使用实体描述访问时为空
+     */
+    private Field field;
+
+    /**
+     * @EmbeddedId 字段（field 属于其类型），普通字段为空
+     */
+    private Field owner;
+
+    private Constructor<?> ownerConstructor;
+
+    private EntityDescriptor<Object> descriptor;
+
+    private int index;
+
+    private Class<?> type;
+
+    private String fieldName;
+
+    /**
+     * 列名（已按方言引用）
+     */
+    private String columnName;
+
+    private TypeConverter<Object> converter;
+
+    /**
+     * 由数据库生成（@GeneratedValue 且没有客户端生成器）
+     */
+    private boolean generated;
+
+    /**
+     * 客户端主键生成器，没有时为空
+     */
+    private IdGenerator idGenerator;
+
+    ColumnBinding(Field field, String columnName) {
+        field.setAccessible(true);
+
+        this.field = field;
+        this.type = field.getType();
+        this.fieldName = field.getName();
+        this.columnName = columnName;
+        this.converter = TypeConverters.resolve(field);
+        this.idGenerator = IdGenerators.resolve(field);
+        this.generated = field.getAnnotation(GeneratedValue.class) != null && idGenerator == null;
+    }
+
+    /**
+     * @EmbeddedId 中的字段，字段名为 owner.field
+     *
+     * @param owner      @EmbeddedId 字段
+     * @param field      复合主键类的字段
+     * @param columnName 列名（已按方言引用）
+     */
+    ColumnBinding(Field owner, Field field, String columnName) {
+        this(field, columnName);
+
+        owner.setAccessible(true);
+        this.owner = owner;
+        this.fieldName = owner.getName() + "." + field.getName();
+        try {
+            this.ownerConstructor = owner.getType().getDeclaredConstructor();
+            this.ownerConstructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("no default constructor in " + owner.getType().getName());
+        }
+    }
+
+    ColumnBinding(EntityDescriptor<?> descriptor, int index, String columnName) {
+        ColumnDescriptor column = descriptor.getColumns().get(index);
+
+        this.type = column.getType();
+        this.fieldName = column.getFieldName();
+        this.columnName = columnName;
+        this.converter = TypeConverters.resolve(descriptor.getEntityClass().getName() + "." + fieldName, type,
+            column.getConverter(), column.getEnumType());
+        this.generated = column.isGenerated();
+
+        // 客户端生成器按字段注解解析（只有生成字段需要读取注解）
+        if (generated) {
+            try {
+                this.idGenerator = IdGenerators.resolve(descriptor.getEntityClass().getDeclaredField(fieldName));
+                this.generated = idGenerator == null;
+            } catch (NoSuchFieldException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        if (column.hasAccessor()) {
+            this.descriptor = (EntityDescriptor<Object>) descriptor;
+            this.index = index;
+        } else {
+            try {
+                this.field = descriptor.getEntityClass().getDeclaredField(fieldName);
+                this.field.setAccessible(true);
+            } catch (NoSuchFieldException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * 字段值
+     *
+     * @param entity 实体
+     * @return
+     */
+    public Object get(Object entity) {
+        if (field == null) {
+            return descriptor.get(entity, index);
+        }
+
+        try {
+            Object target = target(entity, false);
+            return target != null ? field.get(target) : null;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 字段所属对象：普通字段为实体，@EmbeddedId 中的字段为复合主键对象
+     *
+     * @param entity 实体
+     * @param create 复合主键对象为空时是否创建
+     * @return
+     * @throws IllegalAccessException
+     */
+    private Object target(Object entity, boolean create) throws IllegalAccessException {
+        if (owner == null) {
+            return entity;
+        }
+
+        Object target = owner.get(entity);
+        if (target == null && create) {
+            try {
+                target = ownerConstructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("cannot instantiate " + owner.getType().getName(), e);
+            }
+            owner.set(entity, target);
+        }
+        return target;
+    }
+
+    /**
+     * 数据库值（经过转换器）
+     *
+     * @param entity 实体
+     * @return 字段值为空时返回 null
+     */
+    public Object getSqlValue(Object entity) {
+        Object value = get(entity);
+        return value != null ? converter.toSql(value) : null;
+    }
+
+    /**
+     * 设置字段值
+     *
+     * @param entity 实体
+     * @param value  Java值
+     */
+    public void set(Object entity, Object value) {
+        if (field == null) {
+            descriptor.set(entity, index, value);
+            return;
+        }
+
+        try {
+            field.set(target(entity, true), value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 用数据库值设置字段值，基本类型字段直接写入，不经过转换器和装箱
+     *
+     * @param entity 实体
+     * @param value  数据库值
+     */
+    public void setFromSql(Object entity, Object value) {
+        if (field == null) {
+            if (value != null || !type.isPrimitive()) {
+                descriptor.set(entity, index, value != null ? converter.fromSql(value) : null);
+            }
+            return;
+        }
+
+        try {
+            if (value == null) {
+                Object target = target(entity, false);
+                if (!type.isPrimitive() && target != null) {
+                    field.set(target, null);
+                }
+                return;
+            }
+
+            entity = target(entity, true);
+
+            if (type == int.class) {
+                field.setInt(entity, TypeConverters.toNumber(value).intValue());
+            } else if (type == long.class) {
+                field.setLong(entity, TypeConverters.toNumber(value).longValue());
+            } else if (type == boolean.class) {
+                field.setBoolean(entity, TypeConverters.toBoolean(value));
+            } else if (type == double.class) {
+                field.setDouble(entity, TypeConverters.toNumber(value).doubleValue());
+            } else if (type == float.class) {
+                field.setFloat(entity, TypeConverters.toNumber(value).floatValue());
+            } else if (type == short.class) {
+                field.setShort(entity, TypeConverters.toNumber(value).shortValue());
+            } else if (type == byte.class) {
+                field.setByte(entity, TypeConverters.toNumber(value).byteValue());
+            } else if (type == char.class) {
+                field.setChar(entity, value.toString().charAt(0));
+            } else {
+                field.set(entity, converter.fromSql(value));
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 是否为二进制字段
+     *
+     * @return
+     */
+    public boolean isBinary() {
+        return type == byte[].class;
+    }
+
+    /**
+     * 是否为 @GeneratedValue 字段
+     *
+     * @return
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * 客户端主键生成器
+     *
+     * @return 没有时为空
+     */
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public TypeConverter<Object> getConverter() {
+        return converter;
+    }
+}
@@ -0,0 +1,96 @@
+package com.mekki.vertx.dao.support;
+
+import com.mekki.vertx.dao.support.convert.TypeConverter;
+
+import javax.persistence.EnumType;
+
+/**
+ * Created by Mekki on 2018/4/15.
+ * 编译期生成的字段描述
+ */
+public class ColumnDescriptor {
+
+    public static final int ID = 1;
+
+    public static final int GENERATED = 1 << 1;
+
+    public static final int VERSION = 1 << 2;
+
+    private String fieldName;
+
+    private String columnName;
+
+    private Class<?> type;
+
+    private int flags;
+
+    private Class<? extends TypeConverter> converter;
+
+    private EnumType enumType;
+
+    private boolean accessor;
+
+    private ColumnDescriptor(String fieldName, String columnName, Class<?> type, int flags,
+                             Class<? extends TypeConverter> converter, EnumType enumType, boolean accessor) {
+        this.fieldName = fieldName;
+        this.columnName = columnName;
+        this.type = type;
+        this.flags = flags;
+        this.converter = converter;
+        this.enumType = enumType;
+        this.accessor = accessor;
+    }
+
+    /**
+     * 构造字段描述
+     *
+     * @param fieldName  字段名
+     * @param columnName 列名（未引用）
+     * @param type       字段类型
+     * @param flags      ID | GENERATED | VERSION
+     * @param converter  @Convert 指定的转换器，可以为空
+     * @param enumType   @Enumerated 指定的枚举保存方式，可以为空
+     * @param accessor   描述类能否直接访问字段（否则运行时使用反射）
+     * @return
+     */
+    public static ColumnDescriptor of(String fieldName, String columnName, Class<?> type, int flags,
+                                      Class<? extends TypeConverter> converter, EnumType enumType, boolean accessor) {
+        return new ColumnDescriptor(fieldName, columnName, type, flags, converter, enumType, accessor);
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Class<? extends TypeConverter> getConverter() {
+        return converter;
+    }
+
+    public EnumType getEnumType() {
+        return enumType;
+    }
+
+    public boolean isId() {
+        return (flags & ID) != 0;
+    }
+
+    public boolean isGenerated() {
+        return (flags & GENERATED) != 0;
+    }
+
+    public boolean isVersion() {
+        return (flags & VERSION) != 0;
+    }
+
+    public boolean hasAccessor() {
+        return accessor;
+    }
+}
@@ -0,0 +1,237 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Created by Mekki on 2018/4/3.
+ * 并发限制器（有界等待队列，可选 AIMD 自适应并发上限）
+ * <p>
+ * 配置示例：
+ * <pre>
+ * {
+ *     "max_concurrency": 64,
+ *     "max_queue": 256,
+ *     "adaptive": true,
+ *     "initial_concurrency": 16,
+ *     "min_concurrency": 4,
+ *     "latency_threshold": 200,
+ *     "backoff_ratio": 0.9,
+ *     "sample_window": 1000
+ * }
+ * </pre>
+ * 自适应时从 initial_concurrency（默认为上限）开始，上限取 max_concurrency，未配置时取连接池大小，都没有时报错；
+ * 只有耗时超过 latency_threshold 或过载异常（超时、连接异常、被拒绝）才减小上限，每个 sample_window（毫秒）最多减小一次
+ */
+public class ConcurrencyLimiter {
+
+    private static Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    private String name;
+
+    /**
+     * 当前并发上限（自适应时会变化）
+     */
+    private double limit;
+
+    private int minLimit;
+
+    private int maxLimit;
+
+    private int maxQueue;
+
+    private boolean adaptive;
+
+    /**
+     * 延迟阈值（纳秒），超过视为过载
+     */
+    private long latencyThreshold;
+
+    private double backoffRatio;
+
+    /**
+     * 两次减小上限的最小间隔（纳秒）
+     */
+    private long sampleWindow;
+
+    private long lastDecrease;
+
+    private int inFlight;
+
+    private Deque<Waiter> queue = new ArrayDeque<>();
+
+    private ConcurrencyLimiter(String name, JsonObject config, int defaultMaxConcurrency) {
+        this.name = name;
+
+        adaptive = config.getBoolean("adaptive", false);
+        Integer max = config.getInteger("max_concurrency");
+        if (max == null && adaptive) {
+            if (defaultMaxConcurrency <= 0) {
+                throw new IllegalArgumentException(name + " adaptive concurrency limit requires max_concurrency "
+                    + "or a configured pool size");
+            }
+            max = defaultMaxConcurrency;
+        }
+
+        maxLimit = max != null ? max : Integer.MAX_VALUE;
+        minLimit = Math.min(maxLimit, config.getInteger("min_concurrency", 1));
+        maxQueue = config.getInteger("max_queue", Integer.MAX_VALUE);
+        latencyThreshold = config.getLong("latency_threshold", 200L) * 1_000_000L;
+        backoffRatio = config.getDouble("backoff_ratio", 0.9);
+        sampleWindow = config.getLong("sample_window", 1000L) * 1_000_000L;
+        lastDecrease = System.nanoTime() - sampleWindow;
+
+        limit = adaptive
+            ? Math.max(minLimit, Math.min(maxLimit, config.getInteger("initial_concurrency", maxLimit)))
+            : maxLimit;
+    }
+
+    /**
+     * 构造并发限制器
+     *
+     * @param name   名称（用于日志）
+     * @param config 配置
+     * @return
+     */
+    public static ConcurrencyLimiter of(String name, JsonObject config) {
+        return of(name, config, 0);
+    }
+
+    /**
+     * 构造并发限制器
+     *
+     * @param name                  名称（用于日志）
+     * @param config                配置
+     * @param defaultMaxConcurrency 自适应且未配置 max_concurrency 时的上限（通常为连接池大小），0 表示没有
+     * @return
+     */
+    public static ConcurrencyLimiter of(String name, JsonObject config, int defaultMaxConcurrency) {
+        return new ConcurrencyLimiter(name, config != null ? config : new JsonObject(), defaultMaxConcurrency);
+    }
+
+    /**
+     * 申请许可，有空闲许可时立即执行，否则进入等待队列
+     *
+     * @param task 获得许可后执行的操作
+     * @return 等待队列已满时返回 false
+     */
+    public boolean acquire(Handler<Void> task) {
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (queue.size() >= maxQueue) {
+                    return false;
+                }
+                queue.addLast(new Waiter(Vertx.currentContext(), task));
+                return true;
+            }
+            inFlight++;
+        }
+
+        task.handle(null);
+        return true;
+    }
+
+    /**
+     * 有空闲许可时占用，否则直接返回（不进入等待队列）
+     *
+     * @return 是否获得许可
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 归还许可，并唤醒等待队列中的下一个操作
+     *
+     * @param latencyNanos 操作耗时（纳秒）
+     * @param overloaded   操作是否因过载失败（超时、连接异常、被拒绝），其他失败不影响并发上限
+     */
+    public void release(long latencyNanos, boolean overloaded) {
+        Waiter next;
+        synchronized (this) {
+            inFlight--;
+
+            if (adaptive) {
+                adjustLimit(latencyNanos, overloaded);
+            }
+
+            if (inFlight >= (int) limit || queue.isEmpty()) {
+                return;
+            }
+            next = queue.pollFirst();
+            inFlight++;
+        }
+
+        next.run();
+    }
+
+    /**
+     * AIMD：过载时乘性减小（每个采样窗口最多一次），充分利用时每个操作增大 1 / limit，
+     * 即大约每完成 limit 个操作（一轮）增大 1
+     */
+    private void adjustLimit(long latencyNanos, boolean overloaded) {
+        double before = limit;
+
+        if (overloaded || latencyNanos > latencyThreshold) {
+            long now = System.nanoTime();
+            if (now - lastDecrease >= sampleWindow) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+
+        if ((int) before != (int) limit) {
+            logger.debug("{} concurrency limit {} -> {}", name, (int) before, (int) limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 等待中的操作，在申请时的 Context 上恢复执行
+     */
+    private static class Waiter {
+        private Context context;
+        private Handler<Void> task;
+
+        private Waiter(Context context, Handler<Void> task) {
+            this.context = context;
+            this.task = task;
+        }
+
+        private void run() {
+            if (context != null) {
+                context.runOnContext(task);
+            } else {
+                task.handle(null);
+            }
+        }
+    }
+}
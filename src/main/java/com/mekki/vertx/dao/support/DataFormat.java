@@ -0,0 +1,251 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/17.
+ * 导入导出格式，每行一条记录，字段名为实体字段名
+ */
+public enum DataFormat {
+
+    /**
+     * CSV：第一行为字段名，NULL 为空字段，空字符串为 ""
+     */
+    CSV {
+        @Override
+        public Buffer header(List<String> fields) {
+            return Buffer.buffer(String.join(",", fields)).appendString("\n");
+        }
+
+        @Override
+        public Buffer encode(List<String> fields, JsonArray row) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+
+                Object value = row.getValue(i);
+                if (value != null) {
+                    appendCsv(sb, toText(value));
+                }
+            }
+            return Buffer.buffer(sb.append('\n').toString());
+        }
+
+        @Override
+        public Decoder decoder() {
+            return new Decoder() {
+
+                private List<String> fields;
+
+                /**
+                 * 引号内包含换行时的未完成行
+                 */
+                private StringBuilder partial;
+
+                @Override
+                public JsonObject decode(String line) {
+                    if (partial != null) {
+                        line = partial.append('\n').append(line).toString();
+                        partial = null;
+                    }
+
+                    List<String> values = parseCsv(line);
+                    if (values == null) {
+                        partial = new StringBuilder(line);
+                        return null;
+                    }
+
+                    if (fields == null) {
+                        fields = values;
+                        return null;
+                    }
+
+                    if (values.size() == 1 && values.get(0) == null) {
+                        return null;
+                    }
+
+                    JsonObject row = new JsonObject();
+                    for (int i = 0; i < fields.size() && i < values.size(); i++) {
+                        row.put(fields.get(i), values.get(i));
+                    }
+                    return row;
+                }
+
+                @Override
+                public boolean isComplete() {
+                    return partial == null;
+                }
+            };
+        }
+    },
+
+    /**
+     * 每行一个 JSON 对象（newline-delimited JSON）
+     */
+    NDJSON {
+        @Override
+        public Buffer header(List<String> fields) {
+            return null;
+        }
+
+        @Override
+        public Buffer encode(List<String> fields, JsonArray row) {
+            JsonObject json = new JsonObject();
+            for (int i = 0; i < fields.size(); i++) {
+                json.put(fields.get(i), row.getValue(i));
+            }
+            return Buffer.buffer(json.encode()).appendString("\n");
+        }
+
+        @Override
+        public Decoder decoder() {
+            return new Decoder() {
+                @Override
+                public JsonObject decode(String line) {
+                    return line.trim().isEmpty() ? null : new JsonObject(line);
+                }
+
+                @Override
+                public boolean isComplete() {
+                    return true;
+                }
+            };
+        }
+    };
+
+    /**
+     * 文件头
+     *
+     * @param fields 字段名
+     * @return 没有文件头时返回 null
+     */
+    public abstract Buffer header(List<String> fields);
+
+    /**
+     * 编码一行
+     *
+     * @param fields 字段名
+     * @param row    查询结果行（与字段名顺序相同）
+     * @return 包括换行符
+     */
+    public abstract Buffer encode(List<String> fields, JsonArray row);
+
+    /**
+     * 构造解码器（有状态，每次导入一个）
+     *
+     * @return
+     */
+    public abstract Decoder decoder();
+
+    /**
+     * 按行解码
+     */
+    public interface Decoder {
+
+        /**
+         * 解码一行（不包括换行符）
+         *
+         * @param line 行
+         * @return 字段名 -> 值，文件头、空行或未完成的行返回 null
+         */
+        JsonObject decode(String line);
+
+        /**
+         * 是否没有未完成的行
+         *
+         * @return
+         */
+        boolean isComplete();
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        if (value instanceof JsonObject) {
+            return ((JsonObject) value).encode();
+        }
+        if (value instanceof JsonArray) {
+            return ((JsonArray) value).encode();
+        }
+        return value.toString();
+    }
+
+    private static void appendCsv(StringBuilder sb, String value) {
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 解析一行 CSV
+     *
+     * @param line 行
+     * @return 字段值（未加引号的空字段为 null），引号未闭合时返回 null
+     */
+    private static List<String> parseCsv(String line) {
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                values.add(quoted || value.length() > 0 ? value.toString() : null);
+                value.setLength(0);
+                quoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+
+        if (inQuotes) {
+            return null;
+        }
+
+        values.add(quoted || value.length() > 0 ? value.toString() : null);
+        return values;
+    }
+}
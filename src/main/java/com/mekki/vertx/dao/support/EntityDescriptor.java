@@ -0,0 +1,54 @@
+package com.mekki.vertx.dao.support;
+
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/15.
+ * 编译期生成的实体描述（EntityDescriptorProcessor 生成 &lt;实体类名&gt;_Descriptor），
+ * 提供表结构与字段访问，运行时不需要扫描注解和反射访问字段
+ *
+ * @param <T> 实体类型
+ */
+public interface EntityDescriptor<T> {
+
+    Class<T> getEntityClass();
+
+    /**
+     * 表名（未引用）
+     *
+     * @return
+     */
+    String getTableName();
+
+    /**
+     * 字段，下标与 get/set 的 index 对应
+     *
+     * @return
+     */
+    List<ColumnDescriptor> getColumns();
+
+    /**
+     * 构造实体
+     *
+     * @return 没有可访问的无参构造方法时返回 null
+     */
+    T newInstance();
+
+    /**
+     * 字段值
+     *
+     * @param entity 实体
+     * @param index  字段下标（ColumnDescriptor.hasAccessor() 为 true）
+     * @return
+     */
+    Object get(T entity, int index);
+
+    /**
+     * 设置字段值
+     *
+     * @param entity 实体
+     * @param index  字段下标（ColumnDescriptor.hasAccessor() 为 true）
+     * @param value  Java值
+     */
+    void set(T entity, int index, Object value);
+}
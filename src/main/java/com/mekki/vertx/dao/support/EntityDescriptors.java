@@ -0,0 +1,46 @@
+package com.mekki.vertx.dao.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Created by Mekki on 2018/4/15.
+ * 按命名约定查找编译期生成的实体描述：com.example.User -> com.example.User_Descriptor，
+ * 嵌套类 com.example.Outer$Inner -> com.example.Outer_Inner_Descriptor
+ */
+public class EntityDescriptors {
+
+    private static Logger logger = LoggerFactory.getLogger(EntityDescriptors.class);
+
+    public static final String SUFFIX = "_Descriptor";
+
+    private EntityDescriptors() {
+    }
+
+    /**
+     * 查找实体描述
+     *
+     * @param entityClass 实体类型
+     * @param <T>         实体类型
+     * @return 没有生成时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityDescriptor<T> find(Class<T> entityClass) {
+        String name = entityClass.getName().replace('$', '_') + SUFFIX;
+
+        try {
+            Class<?> descriptorClass = Class.forName(name, true, entityClass.getClassLoader());
+            EntityDescriptor<T> descriptor = (EntityDescriptor<T>) descriptorClass.getDeclaredConstructor().newInstance();
+            if (descriptor.getEntityClass() != entityClass) {
+                logger.warn("{} does not describe {}", name, entityClass.getName());
+                return null;
+            }
+            return descriptor;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.warn("cannot load entity descriptor {} cause : {}", name, e.toString());
+            return null;
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.mekki.vertx.dao.support;
 
+import com.mekki.vertx.dao.support.convert.TypeConverters;
+import com.mekki.vertx.dao.support.dialect.Dialect;
+import com.mekki.vertx.dao.support.id.IdGenerator;
+import com.mekki.vertx.dao.support.id.SequenceSource;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.UpdateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.*;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.text.SimpleDateFormat;
+import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -20,43 +31,108 @@ public class EntitySQLSupport<T> {
     private static Logger logger = LoggerFactory.getLogger(EntitySQLSupport.class);
 
     /**
-     * SQL类缓存
+     * SQL类缓存，key 为 类名@方言
      */
-    private static Map<String, EntitySQLSupport<?>> sqlSupportCache = new HashMap<>();
+    private static Map<String, EntitySQLSupport<?>> sqlSupportCache = new ConcurrentHashMap<>();
 
     private Class<T> entityClass;
 
+    private Dialect dialect;
+
+    /**
+     * 表名（未引用）
+     */
+    private String table;
+
+    /**
+     * 表名（已按方言引用）
+     */
     private String tableName;
 
+    /**
+     * 单列主键的列名和绑定，复合主键时为空
+     */
     private String pkName;
 
-    private Field pkField;
+    private ColumnBinding pkBinding;
+
+    /**
+     * 主键绑定（@Id 字段，@IdClass 时有多个，@EmbeddedId 时为其中的字段）
+     */
+    private List<ColumnBinding> pkBindings = new ArrayList<>();
+
+    /**
+     * 使用客户端生成器的字段
+     */
+    private List<ColumnBinding> idBindings;
+
+    /**
+     * 乐观锁版本字段（@Version）
+     */
+    private Field versionField;
+
+    private String versionName;
+
+    private ColumnBinding versionBinding;
 
     private String selectAllSql;
 
-    private Map<String, String> columns;
+    /**
+     * 字段绑定（转换器在构造时解析）
+     */
+    private List<ColumnBinding> bindings;
+
+    /**
+     * 编译期生成的实体描述，没有生成时为空
+     */
+    private EntityDescriptor<T> descriptor;
+
+    /**
+     * 无参构造器，用于查询结果映射（实体描述不能构造实体时使用）
+     */
+    private Constructor<T> constructor;
+
+    /**
+     * 按写入字段集合缓存的新增语句模板
+     */
+    private BoundedCache<BitSet, String> insertSqlCache = BoundedCache.of(256);
+
+    /**
+     * 按更新字段集合缓存的更新语句模板（最后一位表示是否带乐观锁条件）
+     */
+    private BoundedCache<BitSet, String> updateSqlCache = BoundedCache.of(256);
 
-    private EntitySQLSupport(Class<T> clazz) {
+    private EntitySQLSupport(Class<T> clazz, Dialect dialect) {
         entityClass = clazz;
+        this.dialect = dialect;
 
         if (entityClass.getDeclaredFields().length == 0) {
             throw new RuntimeException("No fields in class " + clazz.getName());
         }
 
-        resolveTableName();
-        resolvePk();
-        resolveColumns();
+        // 实体描述不包含 @EmbeddedId 中的字段，使用反射
+        descriptor = hasEmbeddedId() ? null : EntityDescriptors.find(clazz);
+        if (descriptor != null) {
+            resolveDescriptor();
+        } else {
+            resolveTableName();
+            resolveVersion();
+            resolveColumns();
+            resolveConstructor();
+        }
+        resolveKeys();
         resolveSelectSql();
-        logger.info("built {}", clazz.getName());
+        logger.info("built {} ({}{})", clazz.getName(), dialect, descriptor != null ? ", descriptor" : "");
     }
 
-    @SuppressWarnings("unchecked")
     public static <E> EntitySQLSupport<E> of(Class<E> clazz) {
-        if (!sqlSupportCache.containsKey(clazz.getName())) {
-            sqlSupportCache.put(clazz.getName(), new EntitySQLSupport<>(clazz));
-        }
+        return of(clazz, Dialect.mysql());
+    }
 
-        return (EntitySQLSupport<E>) sqlSupportCache.get(clazz.getName());
+    @SuppressWarnings("unchecked")
+    public static <E> EntitySQLSupport<E> of(Class<E> clazz, Dialect dialect) {
+        return (EntitySQLSupport<E>) sqlSupportCache.computeIfAbsent(clazz.getName() + "@" + dialect.getName(),
+            key -> new EntitySQLSupport<>(clazz, dialect));
     }
 
     /**
@@ -69,18 +145,66 @@ public class EntitySQLSupport<T> {
         return camel.replaceAll("[A-Z]", "_$0").toLowerCase();
     }
 
+    private boolean hasEmbeddedId() {
+        return Stream.of(entityClass.getDeclaredFields()).anyMatch(field -> field.getAnnotation(EmbeddedId.class) != null);
+    }
+
+    /**
+     * 主键：单列主键记录列名，以及使用客户端生成器的字段
+     */
+    private void resolveKeys() {
+        if (pkBindings.size() == 1) {
+            pkBinding = pkBindings.get(0);
+            pkName = pkBinding.getColumnName();
+        }
+
+        idBindings = bindings.stream().filter(binding -> binding.getIdGenerator() != null).collect(Collectors.toList());
+    }
+
     /**
-     * 主键
+     * 乐观锁版本字段，只支持数值类型
      */
-    private void resolvePk() {
+    private void resolveVersion() {
         Optional<Field> fieldOptional = Stream.of(entityClass.getDeclaredFields())
-            .filter(field -> field.getAnnotation(Id.class) != null)
+            .filter(field -> field.getAnnotation(Version.class) != null)
             .findFirst();
 
         if (fieldOptional.isPresent()) {
-            pkField = fieldOptional.get();
+            versionField = fieldOptional.get();
+
+            checkVersionType(versionField.getName(), versionField.getType());
 
-            pkName = resolveFieldName(pkField);
+            versionName = dialect.quote(resolveFieldName(versionField));
+        }
+    }
+
+    private static void checkVersionType(String fieldName, Class<?> type) {
+        if (!type.equals(Integer.class) && !type.equals(Long.class) && !type.equals(Short.class)) {
+            throw new RuntimeException("@Version field " + fieldName + " must be Integer, Long or Short");
+        }
+    }
+
+    /**
+     * 从实体描述读取表名、主键、版本字段和字段绑定
+     */
+    private void resolveDescriptor() {
+        table = descriptor.getTableName();
+        tableName = dialect.quote(table);
+
+        bindings = new ArrayList<>();
+        List<ColumnDescriptor> columns = descriptor.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnDescriptor column = columns.get(i);
+            ColumnBinding binding = new ColumnBinding(descriptor, i, dialect.quote(column.getColumnName()));
+            bindings.add(binding);
+
+            if (column.isId()) {
+                pkBindings.add(binding);
+            } else if (column.isVersion() && versionBinding == null) {
+                checkVersionType(column.getFieldName(), column.getType());
+                versionBinding = binding;
+                versionName = binding.getColumnName();
+            }
         }
     }
 
@@ -91,10 +215,11 @@ public class EntitySQLSupport<T> {
         Table table = entityClass.getAnnotation(Table.class);
 
         if (table != null && table.name().length() > 0) {
-            tableName = table.name();
+            this.table = table.name();
         } else {
-            tableName = camel2Underline(entityClass.getSimpleName());
+            this.table = camel2Underline(entityClass.getSimpleName());
         }
+        tableName = dialect.quote(this.table);
     }
 
     /**
@@ -119,23 +244,95 @@ public class EntitySQLSupport<T> {
     }
 
     /**
-     * 字段
+     * 字段（@EmbeddedId 展开为其中的字段）
      */
     private void resolveColumns() {
-        columns = Stream.of(entityClass.getDeclaredFields())
-            .filter(field -> field.getAnnotation(Transient.class) == null)
-            .collect(Collectors.toMap(Field::getName, this::resolveFieldName));
+        Map<String, Field> fields = Stream.of(entityClass.getDeclaredFields())
+            .filter(field -> field.getAnnotation(Transient.class) == null && !Modifier.isStatic(field.getModifiers()))
+            .collect(Collectors.toMap(Field::getName, field -> field));
+
+        bindings = new ArrayList<>();
+        fields.values().forEach(field -> {
+            if (field.getAnnotation(EmbeddedId.class) != null) {
+                Stream.of(field.getType().getDeclaredFields())
+                    .filter(key -> key.getAnnotation(Transient.class) == null && !Modifier.isStatic(key.getModifiers()))
+                    .forEach(key -> {
+                        ColumnBinding binding = new ColumnBinding(field, key, dialect.quote(resolveFieldName(key)));
+                        bindings.add(binding);
+                        pkBindings.add(binding);
+                    });
+                return;
+            }
+
+            ColumnBinding binding = new ColumnBinding(field, dialect.quote(resolveFieldName(field)));
+            bindings.add(binding);
+
+            if (field.getAnnotation(Id.class) != null) {
+                pkBindings.add(binding);
+            } else if (field.equals(versionField)) {
+                versionBinding = binding;
+            }
+        });
     }
 
     /**
      * SELECT ALL SQL
      */
     private void resolveSelectSql() {
-        String columns = this.columns.entrySet().stream()
-            .map(i -> "`" + i.getValue() + "` AS `" + i.getKey() + "`")
+        String columns = bindings.stream()
+            .map(i -> i.getColumnName() + " AS " + dialect.quote(i.getFieldName()))
             .reduce((l, r) -> l + "," + r).orElse("");
 
-        selectAllSql = "SELECT " + columns + " FROM `" + tableName + "`";
+        selectAllSql = "SELECT " + columns + " FROM " + tableName;
+    }
+
+    private void resolveConstructor() {
+        try {
+            constructor = entityClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            logger.warn("{} has no default constructor, query results cannot be mapped", entityClass.getName());
+        }
+    }
+
+    private T newInstance() {
+        if (descriptor != null) {
+            T item = descriptor.newInstance();
+            if (item != null) {
+                return item;
+            }
+
+            if (constructor == null) {
+                resolveConstructor();
+            }
+        }
+
+        if (constructor == null) {
+            throw new RuntimeException("no default constructor in " + entityClass.getName());
+        }
+
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("cannot instantiate " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * 查询结果行 -> 实体（按字段名读取，经过字段的转换器）
+     *
+     * @param row 查询结果行
+     * @return
+     */
+    public T fromRow(JsonObject row) {
+        T item = newInstance();
+
+        for (ColumnBinding binding : bindings) {
+            if (row.containsKey(binding.getFieldName())) {
+                binding.setFromSql(item, row.getValue(binding.getFieldName()));
+            }
+        }
+        return item;
     }
 
     /**
@@ -146,22 +343,59 @@ public class EntitySQLSupport<T> {
      */
     public void rewritePkValue(T item, UpdateResult result) {
 
-        if (pkField != null) {
-            pkField.setAccessible(true);
-            try {
-                if (pkField.getType().equals(Integer.class)) {
-                    pkField.set(item, result.getKeys().getInteger(0));
-                } else if (pkField.getType().equals(Long.class)) {
-                    pkField.set(item, result.getKeys().getLong(0));
-                } else {
-                    throw new RuntimeException("cannot rewrite pk value");
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
+        if (pkBinding != null && pkBinding.getIdGenerator() == null && result.getKeys() != null && result.getKeys().size() > 0) {
+            pkBinding.setFromSql(item, result.getKeys().getValue(0));
         }
     }
 
+    /**
+     * 是否有使用客户端生成器的字段
+     *
+     * @return
+     */
+    public boolean hasIdGenerators() {
+        return !idBindings.isEmpty();
+    }
+
+    /**
+     * 为空的客户端生成字段赋值（新增前调用）
+     *
+     * @param items   实体
+     * @param source  数据库序列
+     * @param handler 完成后回调
+     */
+    public void assignIds(List<T> items, SequenceSource source, Handler<AsyncResult<Void>> handler) {
+        assignIds(items, 0, source, handler);
+    }
+
+    private void assignIds(List<T> items, int index, SequenceSource source, Handler<AsyncResult<Void>> handler) {
+        if (index >= idBindings.size()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        ColumnBinding binding = idBindings.get(index);
+        List<T> missing = items.stream().filter(item -> binding.get(item) == null).collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            assignIds(items, index + 1, source, handler);
+            return;
+        }
+
+        IdGenerator generator = binding.getIdGenerator();
+        generator.generate(missing.size(), source, ar -> {
+            if (ar.failed()) {
+                handler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+
+            List<Object> ids = ar.result();
+            for (int i = 0; i < missing.size(); i++) {
+                binding.setFromSql(missing.get(i), ids.get(i));
+            }
+            assignIds(items, index + 1, source, handler);
+        });
+    }
+
     /**
      * 构造查询语句
      *
@@ -179,22 +413,11 @@ public class EntitySQLSupport<T> {
      * @return
      */
     private String buildWhereCondition(T item) {
-        Optional<String> whereName = columns.entrySet().stream().map(
-            entry -> {
-                try {
-                    String fieldName = entry.getKey();
-                    String columnName = entry.getValue();
-
-                    Field field = entityClass.getDeclaredField(fieldName);
-
-                    field.setAccessible(true);
-                    Object v = field.get(item);
-                    if (v != null) {
-                        String condition = convert(v);
-                        return "`" + columnName + "` = '" + condition + "' ";
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+        Optional<String> whereName = bindings.stream().map(
+            binding -> {
+                Object v = binding.getSqlValue(item);
+                if (v != null) {
+                    return binding.getColumnName() + " = " + dialect.literal(v) + " ";
                 }
                 return null;
             }
@@ -211,197 +434,685 @@ public class EntitySQLSupport<T> {
      * @return
      */
     public String buildSelectCountSql(T item) {
-        return "SELECT COUNT(*) AS count FROM `" + tableName + "`" + buildWhereCondition(item) + ";";
+        return "SELECT COUNT(*) AS " + dialect.quote("count") + " FROM " + tableName + buildWhereCondition(item) + ";";
+    }
+
+    /**
+     * 构造聚合查询语句（按分组字段排序）
+     *
+     * @param item        实体（非空字段为查询条件）
+     * @param aggregation 聚合定义
+     * @return
+     */
+    public String buildAggregateSql(T item, Aggregation aggregation) {
+        if (aggregation.getAggregates().isEmpty() && aggregation.getGroupBy().isEmpty()) {
+            throw new RuntimeException("nothing to aggregate!");
+        }
+
+        List<String> columns = new ArrayList<>();
+        List<String> groupBy = new ArrayList<>();
+        for (String field : aggregation.getGroupBy()) {
+            String columnName = findBinding(field).getColumnName();
+            columns.add(columnName + " AS " + dialect.quote(field));
+            groupBy.add(columnName);
+        }
+
+        for (Aggregation.Aggregate aggregate : aggregation.getAggregates()) {
+            String argument = aggregate.getField() != null ? findBinding(aggregate.getField()).getColumnName() : "*";
+            columns.add(aggregate.getFunction() + "(" + argument + ") AS " + dialect.quote(aggregate.getAlias()));
+        }
+
+        String group = groupBy.isEmpty() ? ""
+            : " GROUP BY " + String.join(",", groupBy) + " ORDER BY " + String.join(",", groupBy);
+
+        return "SELECT " + String.join(",", columns) + " FROM " + tableName + buildWhereCondition(item) + group + ";";
+    }
+
+    /**
+     * 聚合查询结果行，分组字段和 MIN / MAX 按字段类型转换
+     *
+     * @param row         查询结果行
+     * @param aggregation 聚合定义
+     * @return
+     */
+    public AggregateRow toAggregateRow(JsonObject row, Aggregation aggregation) {
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        for (String field : aggregation.getGroupBy()) {
+            values.put(field, fromSql(findBinding(field), row.getValue(field)));
+        }
+
+        for (Aggregation.Aggregate aggregate : aggregation.getAggregates()) {
+            Object value = row.getValue(aggregate.getAlias());
+            values.put(aggregate.getAlias(), aggregate.isFieldTyped() ? fromSql(findBinding(aggregate.getField()), value) : value);
+        }
+
+        return AggregateRow.of(values);
+    }
+
+    private static Object fromSql(ColumnBinding binding, Object value) {
+        return value != null ? binding.getConverter().fromSql(value) : null;
+    }
+
+    /**
+     * 按字段名查找字段绑定
+     *
+     * @param fieldName 字段名
+     * @return
+     */
+    private ColumnBinding findBinding(String fieldName) {
+        for (ColumnBinding binding : bindings) {
+            if (binding.getFieldName().equals(fieldName)) {
+                return binding;
+            }
+        }
+        throw new RuntimeException("no field " + fieldName + " in " + entityClass.getName());
     }
 
     /**
-     * 构造新增语句
+     * 构造新增语句（语句模板按写入字段集合缓存）
      *
      * @param item             实体
      * @param includeNullField 是否包括NULL字段
      * @return
      */
-    public String buildInsertSql(T item, boolean includeNullField) {
+    public ParameterizedSql buildInsertSql(T item, boolean includeNullField) {
+        BitSet mask = new BitSet(bindings.size());
+        Object[] values = new Object[bindings.size()];
+
+        for (int i = 0; i < bindings.size(); i++) {
+            ColumnBinding binding = bindings.get(i);
+            Object value = binding.getSqlValue(item);
+            if (value != null || (includeNullField && !binding.isGenerated())) {
+                mask.set(i);
+                values[i] = value;
+            }
+        }
 
+        String sql = insertSqlCache.computeIfAbsent(mask, this::buildInsertTemplate);
+
+        JsonArray params = new JsonArray();
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            addParam(params, values[i]);
+        }
+
+        return ParameterizedSql.of(sql, params);
+    }
+
+    /**
+     * 新增语句模板：写入字段使用参数，未写入的自增字段使用方言的默认值
+     *
+     * @param mask 写入字段
+     * @return
+     */
+    private String buildInsertTemplate(BitSet mask) {
         StringBuilder columnNames = new StringBuilder();
         StringBuilder values = new StringBuilder();
 
-        columns.forEach(
-            (fieldName, columnName) -> {
-                try {
-                    Field field = entityClass.getDeclaredField(fieldName);
-
-                    field.setAccessible(true);
-                    Object value = field.get(item);
-                    if (value != null) {
-                        columnNames.append(",`").append(columnName).append("`");
-                        values.append(",'").append(convert(value)).append("'");
-
-                    } else if (field.getAnnotation(GeneratedValue.class) != null) {
-                        columnNames.append(",`").append(columnName).append("`");
-                        values.append(", 0");
-                    } else if (includeNullField) {
-                        columnNames.append(",`").append(columnName).append("`");
-                        values.append(", NULL");
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+        for (int i = 0; i < bindings.size(); i++) {
+            ColumnBinding binding = bindings.get(i);
+            if (mask.get(i)) {
+                columnNames.append(",").append(binding.getColumnName());
+                values.append(",").append(placeholder(binding));
+            } else if (binding.isGenerated()) {
+                columnNames.append(",").append(binding.getColumnName());
+                values.append(",").append(dialect.generatedValue());
+            }
+        }
+
+        if (columnNames.length() == 0) {
+            throw new RuntimeException("nothing to insert!");
+        }
+
+        return "INSERT INTO " + tableName + " " + "(" + columnNames.substring(1) + ") VALUES (" + values.substring(1) + ")"
+            + (pkBinding != null && pkBinding.getIdGenerator() == null ? dialect.returning(pkName) : "") + ";";
+    }
+
+    /**
+     * 构造多行新增语句（包括NULL字段，所有行的字段相同）
+     *
+     * @param items 实体
+     * @return
+     */
+    public String buildBatchInsertSql(List<T> items) {
+        if (items.isEmpty()) {
+            throw new RuntimeException("nothing to insert!");
+        }
+
+        StringBuilder columnNames = new StringBuilder();
+        for (ColumnBinding binding : bindings) {
+            columnNames.append(",").append(binding.getColumnName());
+        }
+        columnNames.deleteCharAt(0);
+
+        StringBuilder rows = new StringBuilder();
+        for (T item : items) {
+            StringBuilder values = new StringBuilder();
+
+            for (ColumnBinding binding : bindings) {
+                Object value = binding.getSqlValue(item);
+                if (value != null) {
+                    values.append(",").append(dialect.literal(value));
+                } else if (binding.isGenerated()) {
+                    values.append(", ").append(dialect.generatedValue());
+                } else {
+                    values.append(", NULL");
                 }
+            }
+
+            values.deleteCharAt(0);
+            rows.append(",(").append(values).append(")");
+        }
+        rows.deleteCharAt(0);
+
+        return "INSERT INTO " + tableName + " " + "(" + columnNames + ") VALUES " + rows + ";";
+    }
 
+    /**
+     * 构造新增或更新语句（主键冲突时更新非空字段，语法由方言决定）
+     * <p>
+     * 方言的更新分支不能比较版本，带 @Version 的实体不支持，应使用 insert / update
+     *
+     * @param item 实体
+     * @return
+     */
+    public String buildUpsertSql(T item) {
+        if (versionBinding != null) {
+            throw new UnsupportedOperationException("upsert of versioned entity " + item.getClass().getName()
+                + " is not supported, use insert / update");
+        }
+        getPkValue(item, "upsert");
+
+        StringBuilder columnNames = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        List<String> updateColumns = new ArrayList<>();
+
+        for (ColumnBinding binding : bindings) {
+            Object value = binding.getSqlValue(item);
+            if (value == null) {
+                continue;
             }
-        );
 
-        columnNames.deleteCharAt(0);
-        values.deleteCharAt(0);
+            columnNames.append(",").append(binding.getColumnName());
+            values.append(",").append(dialect.literal(value));
+            if (!pkBindings.contains(binding)) {
+                updateColumns.add(binding.getColumnName());
+            }
+        }
 
-        return "INSERT INTO " + tableName + " " + "(" + columnNames + ") VALUES (" + values + ");";
+        String keys = pkBindings.stream().map(ColumnBinding::getColumnName).collect(Collectors.joining(","));
+        return dialect.upsert(tableName, columnNames.substring(1), values.substring(1), keys, updateColumns);
     }
 
     /**
-     * 构造更新语句
+     * 构造按主键更新语句（语句模板按更新字段集合缓存），有版本字段但版本值为空时抛出 OptimisticLockException
      *
-     * @param item
+     * @param item             实体
+     * @param includeNullField 是否包括NULL字段
      * @return
      */
-    public String buildUpdateSql(T item, boolean includeNullField) {
+    public ParameterizedSql buildUpdateSql(T item, boolean includeNullField) {
+        Object[] pk = getPkValue(item, "update");
+
+        BitSet mask = new BitSet(bindings.size() + 1);
+        Object[] values = new Object[bindings.size()];
+
+        for (int i = 0; i < bindings.size(); i++) {
+            ColumnBinding binding = bindings.get(i);
+            if (pkBindings.contains(binding) || binding == versionBinding) {
+                continue;
+            }
 
-        if (pkField == null) {
-            throw new RuntimeException("update without pk value  is forbidden!");
+            Object value = binding.getSqlValue(item);
+            if (value != null || includeNullField) {
+                mask.set(i);
+                values[i] = value;
+            }
         }
 
-        pkField.setAccessible(true);
-        Object o = null;
-        try {
-            o = pkField.get(item);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+        if (mask.isEmpty() && versionBinding == null) {
+            throw new RuntimeException("nothing to update!");
         }
 
-        if (o == null) {
-            throw new RuntimeException("update without pk value  is forbidden!");
+        return buildUpdateStatement(item, pk, mask, values);
+    }
+
+    /**
+     * 字段值快照，保存经过转换器的数据库值（JsonObject、List 等可变值原地修改后也能比较出差异）
+     *
+     * @param item 实体
+     * @return
+     */
+    public Object[] snapshot(T item) {
+        Object[] values = new Object[bindings.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            Object value = bindings.get(i).getSqlValue(item);
+            values[i] = value instanceof byte[] ? ((byte[]) value).clone() : value;
         }
 
-        Optional<String> updateValue = columns.entrySet().stream().map(
-            entry -> {
-                try {
+        return values;
+    }
 
-                    String fieldName = entry.getKey();
-                    String columnName = entry.getValue();
+    /**
+     * 构造只包含修改字段的更新语句（语句模板按修改字段集合缓存）
+     *
+     * @param item             实体
+     * @param snapshot         加载时的快照
+     * @param includeNullField 是否包括被改为NULL的字段
+     * @return 没有修改时返回 null
+     */
+    public ParameterizedSql buildDirtyUpdateSql(T item, Object[] snapshot, boolean includeNullField) {
+        Object[] pk = getPkValue(item, "update");
 
-                    Field field = entityClass.getDeclaredField(fieldName);
+        BitSet dirty = new BitSet(bindings.size() + 1);
+        Object[] values = new Object[bindings.size()];
 
-                    field.setAccessible(true);
-                    Object v = field.get(item);
-                    if (v != null) {
-                        String condition = convert(v);
-                        return "`" + columnName + "` = '" + condition + "' ";
-                    } else if (includeNullField) {
-                        return "`" + columnName + "` = NULL ";
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                return null;
+        for (int i = 0; i < bindings.size(); i++) {
+            ColumnBinding binding = bindings.get(i);
+            if (pkBindings.contains(binding) || binding == versionBinding) {
+                continue;
             }
-        ).filter(Objects::nonNull)
-            .reduce((l, r) -> l + " , " + r);
 
-        if (!updateValue.isPresent()) {
-            throw new RuntimeException("nothing to update!");
+            Object value = binding.getSqlValue(item);
+            if (value == null && !includeNullField) {
+                continue;
+            }
+
+            if (!Objects.deepEquals(value, snapshot[i])) {
+                dirty.set(i);
+                values[i] = value;
+            }
+        }
+
+        if (dirty.isEmpty()) {
+            return null;
         }
 
-        return "UPDATE " + tableName + " SET " + updateValue.get() + " WHERE `" + pkName + "` = '" + convert(o) + "';";
+        return buildUpdateStatement(item, pk, dirty, values);
     }
 
     /**
-     * 构造删除语句
+     * 按更新字段集合取缓存的语句模板并绑定参数
      *
-     * @param item
+     * @param item   实体
+     * @param pk     主键值（与主键绑定顺序相同）
+     * @param mask   更新字段
+     * @param values 更新字段的数据库值
      * @return
      */
-    public String buildDeleteSql(T item) {
+    private ParameterizedSql buildUpdateStatement(T item, Object[] pk, BitSet mask, Object[] values) {
+        Object version = requireVersion(item, "update");
+        if (version != null) {
+            mask.set(bindings.size());
+        }
+
+        String sql = updateSqlCache.computeIfAbsent(mask, this::buildUpdateTemplate);
 
-        if (pkField == null) {
-            throw new RuntimeException("delete without pk value  is forbidden!");
+        JsonArray params = new JsonArray();
+        for (int i = mask.nextSetBit(0); i >= 0 && i < bindings.size(); i = mask.nextSetBit(i + 1)) {
+            addParam(params, values[i]);
+        }
+        for (Object value : pk) {
+            addParam(params, value);
+        }
+        if (version != null) {
+            addParam(params, version);
         }
 
-        pkField.setAccessible(true);
-        Object o = null;
-        try {
-            o = pkField.get(item);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+        return ParameterizedSql.of(sql, params);
+    }
+
+    private String buildUpdateTemplate(BitSet mask) {
+        StringBuilder set = new StringBuilder();
+        for (int i = mask.nextSetBit(0); i >= 0 && i < bindings.size(); i = mask.nextSetBit(i + 1)) {
+            ColumnBinding binding = bindings.get(i);
+            set.append(", ").append(binding.getColumnName()).append(" = ").append(placeholder(binding));
+        }
+
+        if (versionBinding != null) {
+            set.append(", ").append(versionName).append(" = ").append(versionName).append(" + 1");
         }
 
-        if (o == null) {
-            throw new RuntimeException("delete without pk value is forbidden!");
+        String where = pkBindings.stream().map(binding -> binding.getColumnName() + " = " + placeholder(binding))
+            .collect(Collectors.joining(" AND "));
+
+        return "UPDATE " + tableName + " SET " + set.substring(2) + " WHERE " + where
+            + (mask.get(bindings.size()) ? " AND " + versionName + " = ?" : "") + ";";
+    }
+
+    /**
+     * 版本值，有版本字段但值为空时视为版本冲突（无法确认实体是最新的）
+     *
+     * @param item      实体
+     * @param operation 操作名称
+     * @return 没有版本字段时返回 null
+     */
+    private Object requireVersion(T item, String operation) {
+        Object version = getVersion(item);
+        if (versionBinding != null && version == null) {
+            throw new OptimisticLockException(operation + " conflict on " + item.getClass().getName()
+                + ", version is null");
         }
+        return version;
+    }
 
-        String deleteCondition = columns.entrySet().stream().map(
-            entry -> {
-                try {
+    /**
+     * 主键值（经过转换器，与主键绑定顺序相同），没有主键或任一主键值为空时抛出异常
+     *
+     * @param item      实体
+     * @param operation 操作名称
+     * @return
+     */
+    private Object[] getPkValue(T item, String operation) {
+        if (pkBindings.isEmpty()) {
+            throw new RuntimeException(operation + " without pk value  is forbidden!");
+        }
 
-                    String fieldName = entry.getKey();
-                    String columnName = entry.getValue();
+        Object[] values = new Object[pkBindings.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pkBindings.get(i).getSqlValue(item);
+            if (values[i] == null) {
+                throw new RuntimeException(operation + " without pk value  is forbidden!");
+            }
+        }
+        return values;
+    }
 
-                    Field field = entityClass.getDeclaredField(fieldName);
+    /**
+     * 参数占位符，二进制参数按方言包装（JsonArray 不能保存 byte[]）
+     *
+     * @param binding 字段绑定
+     * @return
+     */
+    private String placeholder(ColumnBinding binding) {
+        return binding.isBinary() ? dialect.binaryPlaceholder() : "?";
+    }
 
-                    field.setAccessible(true);
-                    Object v = field.get(item);
-                    if (v != null) {
-                        String condition = convert(v);
-                        return "`" + columnName + "` = '" + condition + "' ";
-                    } else {
-                        return "`" + columnName + "` IS NULL ";
+    /**
+     * 添加SQL参数
+     *
+     * @param params 参数
+     * @param value  数据库值（已经过转换器）
+     */
+    private void addParam(JsonArray params, Object value) {
+        if (value == null) {
+            params.addNull();
+        } else if (value instanceof byte[]) {
+            params.add(dialect.binaryParam((byte[]) value));
+        } else if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            params.add(value);
+        } else {
+            params.add(value.toString());
+        }
+    }
 
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+    /**
+     * 构造删除语句，有版本字段但版本值为空时抛出 OptimisticLockException
+     *
+     * @param item
+     * @return
+     */
+    public String buildDeleteSql(T item) {
+        getPkValue(item, "delete");
+        requireVersion(item, "delete");
+
+        String deleteCondition = bindings.stream().map(
+            binding -> {
+                Object v = binding.getSqlValue(item);
+                if (v != null) {
+                    return binding.getColumnName() + " = " + dialect.literal(v) + " ";
+                } else {
+                    return binding.getColumnName() + " IS NULL ";
                 }
-                return null;
             }
-        ).filter(Objects::nonNull)
-            .reduce((l, r) -> l + " AND " + r)
-            .orElse("`" + pkName + "` = '" + convert(o) + "'");
+        ).reduce((l, r) -> l + " AND " + r).get();
 
         return "DELETE FROM  " + tableName + " WHERE " + deleteCondition + ";";
     }
 
     /**
-     * 构造分页语句
+     * 构造按条件批量更新语句（有版本字段时版本值加一）
      *
-     * @param item     实体
-     * @param startRow 开始行数
-     * @param size     分页大小
-     * @param orderBy  排序条件
+     * @param example 条件实体（非空字段为条件）
+     * @param patch   更新实体（非空字段为更新值，主键和版本字段忽略）
+     * @param lower   主键下界（不包含），为空时不限制
+     * @param upper   主键上界（包含），为空时不限制
      * @return
      */
-    public String buildPageSql(T item, Integer startRow, Integer size, String orderBy) {
-        return selectAllSql + buildWhereCondition(item) + (orderBy != null ? " ORDER BY " + orderBy : "") + " LIMIT " + startRow + ", " + size + ";";
+    public String buildUpdateWhereSql(T example, T patch, Object lower, Object upper) {
+        List<String> set = new ArrayList<>();
+        for (ColumnBinding binding : bindings) {
+            if (pkBindings.contains(binding) || binding == versionBinding) {
+                continue;
+            }
+
+            Object value = binding.getSqlValue(patch);
+            if (value != null) {
+                set.add(binding.getColumnName() + " = " + dialect.literal(value));
+            }
+        }
+
+        if (set.isEmpty()) {
+            throw new RuntimeException("nothing to update!");
+        }
+
+        if (versionBinding != null) {
+            set.add(versionName + " = " + versionName + " + 1");
+        }
+
+        return "UPDATE " + tableName + " SET " + String.join(", ", set)
+            + buildBulkCondition(example, lower, upper, "updateWhere") + ";";
     }
 
     /**
-     * 对象转字符串
+     * 构造按条件批量删除语句
      *
-     * @param source 对象
+     * @param example 条件实体（非空字段为条件）
+     * @param lower   主键下界（不包含），为空时不限制
+     * @param upper   主键上界（包含），为空时不限制
      * @return
      */
-    private String convert(Object source) {
-        if (source instanceof String) {
-            return (String) source;
+    public String buildDeleteWhereSql(T example, Object lower, Object upper) {
+        return "DELETE FROM " + tableName + buildBulkCondition(example, lower, upper, "deleteWhere") + ";";
+    }
+
+    /**
+     * 构造分块主键查询语句：条件范围内大于下界的前 size 个主键（按主键排序）
+     *
+     * @param example 条件实体
+     * @param lower   主键下界（不包含），为空时从头开始
+     * @param size    分块大小
+     * @return
+     */
+    public String buildChunkKeySql(T example, Object lower, int size) {
+        if (pkBinding == null) {
+            throw new RuntimeException("chunking without single-column pk is forbidden!");
+        }
+
+        return "SELECT " + pkName + " AS " + dialect.quote("pk") + " FROM " + tableName
+            + buildBulkCondition(example, lower, null, "chunk") + " ORDER BY " + pkName + " " + dialect.page(0, size) + ";";
+    }
+
+    /**
+     * 批量操作条件，没有任何条件时抛出异常（避免误操作整表）
+     *
+     * @param example   条件实体
+     * @param lower     主键下界（不包含）
+     * @param upper     主键上界（包含）
+     * @param operation 操作名称
+     * @return
+     */
+    private String buildBulkCondition(T example, Object lower, Object upper, String operation) {
+        if (buildWhereCondition(example).isEmpty()) {
+            throw new RuntimeException(operation + " without condition is forbidden!");
+        }
+
+        return buildRangeCondition(example, lower, upper);
+    }
+
+    /**
+     * 条件实体 + 主键范围条件
+     *
+     * @param example 条件实体
+     * @param lower   主键下界（不包含），为空时不限制
+     * @param upper   主键上界（包含），为空时不限制
+     * @return
+     */
+    private String buildRangeCondition(T example, Object lower, Object upper) {
+        List<String> conditions = new ArrayList<>();
+        if (lower != null) {
+            conditions.add(pkName + " > " + dialect.literal(lower));
+        }
+        if (upper != null) {
+            conditions.add(pkName + " <= " + dialect.literal(upper));
+        }
+
+        String where = buildWhereCondition(example);
+        if (conditions.isEmpty()) {
+            return where;
+        }
+        return (where.isEmpty() ? " WHERE " : where + " AND ") + String.join(" AND ", conditions);
+    }
+
+    /**
+     * 构造主键范围查询语句（MIN / MAX）
+     *
+     * @param example 条件实体
+     * @return
+     */
+    public String buildPkRangeSql(T example) {
+        if (pkBinding == null) {
+            throw new RuntimeException("scan without single-column pk is forbidden!");
         }
 
-        if (source instanceof Number) {
-            return source.toString();
+        return "SELECT MIN(" + pkName + ") AS " + dialect.quote("min") + ", MAX(" + pkName + ") AS " + dialect.quote("max")
+            + " FROM " + tableName + buildWhereCondition(example) + ";";
+    }
+
+    /**
+     * 构造分块扫描语句：主键范围内大于下界的前 size 行（按主键排序）
+     *
+     * @param example 条件实体
+     * @param lower   主键下界（不包含），为空时不限制
+     * @param upper   主键上界（包含），为空时不限制
+     * @param size    分块大小
+     * @return
+     */
+    public String buildScanSql(T example, Object lower, Object upper, int size) {
+        if (pkBinding == null) {
+            throw new RuntimeException("scan without single-column pk is forbidden!");
         }
 
-        if (source instanceof Date) {
-            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(source);
+        return selectAllSql + buildRangeCondition(example, lower, upper) + " ORDER BY " + pkName + " " + dialect.page(0, size) + ";";
+    }
+
+    /**
+     * 主键是否为整数（可以按数值切分范围）
+     *
+     * @return
+     */
+    public boolean isIntegralPk() {
+        if (pkBinding == null) {
+            return false;
         }
 
-        logger.warn("unchecked convert for {}", source.toString());
+        Class<?> type = TypeConverters.wrap(pkBinding.getType());
+        return type == Long.class || type == Integer.class || type == Short.class;
+    }
 
-        return source.toString();
+    /**
+     * 字段名（与查询语句的列顺序相同）
+     *
+     * @return
+     */
+    public List<String> getFieldNames() {
+        return bindings.stream().map(ColumnBinding::getFieldName).collect(Collectors.toList());
+    }
 
+    /**
+     * 表名（未引用）
+     *
+     * @return
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * 主键值（经过转换器），复合主键时为各主键值以 ":" 连接
+     *
+     * @param item 实体
+     * @return 没有主键或主键值为空时返回 null
+     */
+    public Object getPk(T item) {
+        if (pkBinding != null) {
+            return pkBinding.getSqlValue(item);
+        }
+
+        StringJoiner joiner = new StringJoiner(":");
+        for (ColumnBinding binding : pkBindings) {
+            Object value = binding.getSqlValue(item);
+            if (value == null) {
+                return null;
+            }
+            joiner.add(value.toString());
+        }
+        return pkBindings.isEmpty() ? null : joiner.toString();
+    }
+
+    /**
+     * 是否有乐观锁版本字段
+     *
+     * @return
+     */
+    public boolean isVersioned() {
+        return versionBinding != null;
+    }
+
+    /**
+     * 版本值
+     *
+     * @param item 实体
+     * @return
+     */
+    public Object getVersion(T item) {
+        return versionBinding != null ? versionBinding.get(item) : null;
+    }
+
+    /**
+     * 新增前初始化为空的版本值
+     *
+     * @param item 实体
+     */
+    public void initVersion(T item) {
+        if (versionBinding != null && getVersion(item) == null) {
+            versionBinding.setFromSql(item, 0L);
+        }
+    }
+
+    /**
+     * 更新成功后版本值加一，与数据库保持一致
+     *
+     * @param item 实体
+     */
+    public void incrementVersion(T item) {
+        Object version = getVersion(item);
+        if (version != null) {
+            versionBinding.setFromSql(item, ((Number) version).longValue() + 1);
+        }
+    }
+
+    /**
+     * 构造分页语句
+     *
+     * @param item     实体
+     * @param startRow 开始行数
+     * @param size     分页大小
+     * @param orderBy  排序条件
+     * @return
+     */
+    public String buildPageSql(T item, Integer startRow, Integer size, String orderBy) {
+        return selectAllSql + buildWhereCondition(item) + (orderBy != null ? " ORDER BY " + orderBy : "") + " " + dialect.page(startRow, size) + ";";
     }
 }
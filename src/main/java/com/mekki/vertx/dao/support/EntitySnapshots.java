@@ -0,0 +1,93 @@
+package com.mekki.vertx.dao.support;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by Mekki on 2018/4/9.
+ * 实体快照（按对象identity保存，弱引用，实体被回收后快照自动清除）
+ */
+public class EntitySnapshots {
+
+    private ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    private Map<IdentityKey, Object[]> snapshots = new HashMap<>();
+
+    /**
+     * 保存快照
+     *
+     * @param entity 实体
+     * @param values 字段值
+     */
+    public synchronized void put(Object entity, Object[] values) {
+        expunge();
+        snapshots.put(new IdentityKey(entity, queue), values);
+    }
+
+    /**
+     * 获取快照
+     *
+     * @param entity 实体
+     * @return 没有快照时返回 null
+     */
+    public synchronized Object[] get(Object entity) {
+        expunge();
+        return snapshots.get(new IdentityKey(entity, null));
+    }
+
+    /**
+     * 移除快照
+     *
+     * @param entity 实体
+     */
+    public synchronized void remove(Object entity) {
+        expunge();
+        snapshots.remove(new IdentityKey(entity, null));
+    }
+
+    public synchronized int size() {
+        expunge();
+        return snapshots.size();
+    }
+
+    /**
+     * 清除已经被回收的实体的快照
+     */
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            snapshots.remove(reference);
+        }
+    }
+
+    private static class IdentityKey extends WeakReference<Object> {
+        private int hash;
+
+        private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+
+            if (!(o instanceof IdentityKey)) {
+                return false;
+            }
+
+            Object referent = get();
+            return referent != null && referent == ((IdentityKey) o).get();
+        }
+    }
+}
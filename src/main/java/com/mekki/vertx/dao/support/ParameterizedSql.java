@@ -0,0 +1,43 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Created by Mekki on 2018/4/9.
+ * 带参数的SQL
+ */
+public class ParameterizedSql {
+
+    private String sql;
+
+    private JsonArray params;
+
+    private ParameterizedSql(String sql, JsonArray params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /**
+     * 构造带参数的SQL
+     *
+     * @param sql    SQL（参数位置为 ?）
+     * @param params 参数
+     * @return
+     */
+    public static ParameterizedSql of(String sql, JsonArray params) {
+        return new ParameterizedSql(sql, params);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public JsonArray getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + params;
+    }
+}
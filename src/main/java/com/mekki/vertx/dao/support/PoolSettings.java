@@ -0,0 +1,190 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Created by Mekki on 2018/4/14.
+ * 连接池配置，转换为连接池实现（vertx-jdbc DataSourceProvider）的配置项
+ * <p>
+ * jdbcConfig 中的配置示例：
+ * <pre>
+ * "pool": {
+ *     "provider": "hikari",
+ *     "max_size": 32,
+ *     "min_idle": 8,
+ *     "prefill": true,
+ *     "validation_query": "SELECT 1",
+ *     "connection_timeout": 3000,
+ *     "idle_timeout": 600000,
+ *     "max_lifetime": 1800000,
+ *     "leak_detection_threshold": 10000
+ * }
+ * </pre>
+ * 时间单位为毫秒。validation_query 用于预热时校验连接，hikari 还会在借出连接时校验
+ */
+public class PoolSettings {
+
+    private static Logger logger = LoggerFactory.getLogger(PoolSettings.class);
+
+    private static final String C3P0 = "io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider";
+
+    private static final String HIKARI = "io.vertx.ext.jdbc.spi.impl.HikariCPDataSourceProvider";
+
+    private static volatile boolean c3p0Warned;
+
+    private boolean enabled;
+
+    private String provider;
+
+    private Integer maxSize;
+
+    private int minIdle;
+
+    /**
+     * 构造DAO时预先建立 min_idle 个连接
+     */
+    private boolean prefill;
+
+    private String validationQuery;
+
+    private Long connectionTimeout;
+
+    private Long idleTimeout;
+
+    private Long maxLifetime;
+
+    private Long leakDetectionThreshold;
+
+    private PoolSettings(JsonObject config) {
+        enabled = config != null;
+
+        if (config == null) {
+            return;
+        }
+
+        provider = config.getString("provider", "c3p0");
+        maxSize = config.getInteger("max_size");
+        minIdle = Math.max(0, config.getInteger("min_idle", 0));
+        prefill = config.getBoolean("prefill", true);
+        validationQuery = config.getString("validation_query");
+        connectionTimeout = config.getLong("connection_timeout");
+        idleTimeout = config.getLong("idle_timeout");
+        maxLifetime = config.getLong("max_lifetime");
+        leakDetectionThreshold = config.getLong("leak_detection_threshold");
+
+        if (maxSize != null && minIdle > maxSize) {
+            throw new IllegalArgumentException("pool min_idle " + minIdle + " is greater than max_size " + maxSize);
+        }
+    }
+
+    /**
+     * 构造连接池配置
+     *
+     * @param config 配置，为空时使用 jdbcConfig 原有配置
+     * @return
+     */
+    public static PoolSettings of(JsonObject config) {
+        return new PoolSettings(config);
+    }
+
+    /**
+     * 生成连接池实现的配置
+     *
+     * @param jdbcConfig jdbc 配置
+     * @return 新的配置，未配置连接池时返回原配置
+     */
+    public JsonObject apply(JsonObject jdbcConfig) {
+        if (!enabled) {
+            return jdbcConfig;
+        }
+
+        JsonObject config = jdbcConfig.copy();
+        switch (provider) {
+            case "c3p0":
+                applyC3P0(config);
+                break;
+            case "hikari":
+                applyHikari(config);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported pool provider " + provider);
+        }
+        return config;
+    }
+
+    private void applyC3P0(JsonObject config) {
+        config.put("provider_class", C3P0);
+
+        if (maxSize != null) {
+            config.put("max_pool_size", maxSize);
+        }
+        config.put("min_pool_size", minIdle);
+        config.put("initial_pool_size", minIdle);
+        if (idleTimeout != null) {
+            config.put("max_idle_time", (int) (idleTimeout / 1000));
+        }
+
+        if ((connectionTimeout != null || maxLifetime != null || leakDetectionThreshold != null) && !c3p0Warned) {
+            c3p0Warned = true;
+            logger.warn("c3p0 provider ignores connection_timeout, max_lifetime and leak_detection_threshold, "
+                + "set them in c3p0.properties or use the hikari provider");
+        }
+    }
+
+    private void applyHikari(JsonObject config) {
+        config.put("provider_class", HIKARI);
+
+        putIfAbsent(config, "jdbcUrl", config.getValue("url"));
+        putIfAbsent(config, "driverClassName", config.getValue("driver_class"));
+        putIfAbsent(config, "username", config.getValue("user"));
+
+        if (maxSize != null) {
+            config.put("maximumPoolSize", maxSize);
+        }
+        config.put("minimumIdle", minIdle);
+        putIfAbsent(config, "connectionTestQuery", validationQuery);
+        putIfAbsent(config, "connectionTimeout", connectionTimeout);
+        putIfAbsent(config, "idleTimeout", idleTimeout);
+        putIfAbsent(config, "maxLifetime", maxLifetime);
+        putIfAbsent(config, "leakDetectionThreshold", leakDetectionThreshold);
+    }
+
+    private static void putIfAbsent(JsonObject config, String key, Object value) {
+        if (value != null && !config.containsKey(key)) {
+            config.put(key, value);
+        }
+    }
+
+    /**
+     * 连接池大小（max_pool_size / maximumPoolSize / async 的 maxPoolSize），用作自适应并发上限的默认值
+     *
+     * @param config apply 之后的配置
+     * @return 未配置时返回 0
+     */
+    public static int maxPoolSize(JsonObject config) {
+        Integer size = config.getInteger("max_pool_size", config.getInteger("maximumPoolSize"));
+        if (size == null && config.getValue("async") instanceof JsonObject) {
+            size = config.getJsonObject("async").getInteger("maxPoolSize");
+        }
+        return size != null ? size : 0;
+    }
+
+    /**
+     * 构造DAO时需要预先建立的连接数
+     *
+     * @return
+     */
+    public int getWarmUpConnections() {
+        return enabled && prefill ? minIdle : 0;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,228 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonObject;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Created by Mekki on 2018/4/2.
+ * 重试策略（指数退避 + 随机抖动 + 重试预算）
+ * <p>
+ * jdbcConfig 中的配置示例：
+ * <pre>
+ * "retry": {
+ *     "max_attempts": 3,
+ *     "initial_delay": 50,
+ *     "max_delay": 2000,
+ *     "multiplier": 2.0,
+ *     "jitter": 0.5,
+ *     "budget_ratio": 0.2,
+ *     "budget_max": 10,
+ *     "retry_pk_update": false
+ * }
+ * </pre>
+ * 同一数据源的 DAO（包括每个事务的 TransactionalDaoImpl）共用一个重试预算，配置以第一次创建时为准
+ */
+public class RetryPolicy {
+
+    private static final Map<String, RetryPolicy> POLICIES = new ConcurrentHashMap<>();
+
+    /**
+     * 最大尝试次数（包括第一次）
+     */
+    private int maxAttempts;
+
+    /**
+     * 第一次重试的等待时间（毫秒）
+     */
+    private long initialDelay;
+
+    /**
+     * 最大等待时间（毫秒）
+     */
+    private long maxDelay;
+
+    private double multiplier;
+
+    /**
+     * 抖动比例 0~1，实际等待时间在 [delay * (1 - jitter), delay] 之间
+     */
+    private double jitter;
+
+    /**
+     * 每次成功向预算中存入的令牌数
+     */
+    private double budgetRatio;
+
+    /**
+     * 预算上限
+     */
+    private double budgetMax;
+
+    /**
+     * 当前预算，每次重试消耗一个令牌
+     */
+    private double budget;
+
+    /**
+     * 是否重试按主键更新的语句
+     */
+    private boolean retryPkUpdate;
+
+    private RetryPolicy(JsonObject config) {
+        maxAttempts = Math.max(1, config.getInteger("max_attempts", 1));
+        initialDelay = config.getLong("initial_delay", 50L);
+        maxDelay = config.getLong("max_delay", 2000L);
+        multiplier = config.getDouble("multiplier", 2.0);
+        jitter = Math.min(1.0, Math.max(0.0, config.getDouble("jitter", 0.5)));
+        budgetRatio = config.getDouble("budget_ratio", 0.2);
+        budgetMax = config.getDouble("budget_max", 10.0);
+        retryPkUpdate = config.getBoolean("retry_pk_update", false);
+
+        budget = budgetMax;
+    }
+
+    /**
+     * 构造重试策略
+     *
+     * @param config 重试配置，为空时不重试
+     * @return
+     */
+    public static RetryPolicy of(JsonObject config) {
+        return new RetryPolicy(config != null ? config : new JsonObject());
+    }
+
+    /**
+     * 获取数据源共用的重试策略
+     *
+     * @param dataSource 数据源标识
+     * @param config     重试配置，为空时不重试（不共用）
+     * @return
+     */
+    public static RetryPolicy shared(String dataSource, JsonObject config) {
+        if (config == null) {
+            return none();
+        }
+        return POLICIES.computeIfAbsent(dataSource, key -> of(config));
+    }
+
+    /**
+     * 不重试
+     *
+     * @return
+     */
+    public static RetryPolicy none() {
+        return of(null);
+    }
+
+    /**
+     * 是否为可以重试的瞬时异常（连接异常、死锁、锁超时等）
+     *
+     * @param throwable 异常
+     * @return
+     */
+    public static boolean isTransient(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException
+                || t instanceof SQLRecoverableException
+                || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                // 08: connection exception, 40: transaction rollback (deadlock / serialization failure)
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+                    return true;
+                }
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为连接类异常（SQLState 08、SQLRecoverableException、SQLNonTransientConnectionException），
+     * 只有这类异常说明数据库不可用，计入熔断；死锁、锁超时等不计入
+     *
+     * @param throwable 异常
+     * @return
+     */
+    public static boolean isConnectionFailure(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof SQLRecoverableException || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否可以进行下一次尝试，可以时消耗一个预算令牌
+     *
+     * @param attempt 已经尝试的次数
+     * @return
+     */
+    public synchronized boolean tryAcquireRetry(int attempt) {
+        if (attempt >= maxAttempts || budget < 1.0) {
+            return false;
+        }
+
+        budget -= 1.0;
+        return true;
+    }
+
+    /**
+     * 操作成功，补充预算
+     */
+    public synchronized void onSuccess() {
+        if (maxAttempts > 1) {
+            budget = Math.min(budgetMax, budget + budgetRatio);
+        }
+    }
+
+    /**
+     * 计算下一次重试的等待时间
+     *
+     * @param attempt 已经尝试的次数
+     * @return 毫秒
+     */
+    public long delay(int attempt) {
+        double delay = Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempt - 1));
+        double jittered = delay * (1.0 - jitter * ThreadLocalRandom.current().nextDouble());
+
+        return Math.max(1L, (long) jittered);
+    }
+
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isRetryPkUpdate() {
+        return retryPkUpdate;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mekki.vertx.dao.support;
+
+/**
+ * Created by Mekki on 2018/4/5.
+ * 事务保存点
+ */
+public class Savepoint {
+
+    private String name;
+
+    private Savepoint(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 构造保存点
+     *
+     * @param name 名称
+     * @return
+     */
+    public static Savepoint of(String name) {
+        return new Savepoint(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "Savepoint{" +
+            "name='" + name + '\'' +
+            '}';
+    }
+}
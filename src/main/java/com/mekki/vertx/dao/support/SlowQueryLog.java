@@ -0,0 +1,275 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Created by Mekki on 2018/4/18.
+ * 慢查询记录：耗时超过阈值的语句（SQL、参数、连接等待 / 执行 / 映射耗时、可选的执行计划）保存在环形缓冲区中，
+ * 可以通过 event bus 查询
+ * <p>
+ * jdbcConfig 中的配置示例：
+ * <pre>
+ * "slow_query": {
+ *     "threshold": 500,
+ *     "capacity": 100,
+ *     "redact": true,
+ *     "explain": false,
+ *     "address": "vertx.dao.slow_query"
+ * }
+ * </pre>
+ * 同一 Vert.x 实例上同一地址的 DAO 共用一个缓冲区（保存在 Vert.x 的 shared data 中，配置以第一次创建时为准），
+ * 未配置时不记录
+ */
+public class SlowQueryLog implements Shareable {
+
+    private static Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    public static final String DEFAULT_ADDRESS = "vertx.dao.slow_query";
+
+    private static final SlowQueryLog DISABLED = new SlowQueryLog(Long.MAX_VALUE, 0, true, false);
+
+    private static final String LOGS = "vertx.dao.slow_query_logs";
+
+    /**
+     * 字符串常量和数字常量
+     */
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|(?<![\\w.\"`])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    /**
+     * 阈值（纳秒）
+     */
+    private long threshold;
+
+    private int capacity;
+
+    /**
+     * 是否隐去参数和SQL中的常量
+     */
+    private boolean redact;
+
+    /**
+     * 是否异步获取执行计划
+     */
+    private boolean explain;
+
+    private ArrayDeque<JsonObject> entries = new ArrayDeque<>();
+
+    private SlowQueryLog(long threshold, int capacity, boolean redact, boolean explain) {
+        this.threshold = threshold;
+        this.capacity = capacity;
+        this.redact = redact;
+        this.explain = explain;
+    }
+
+    /**
+     * 获取慢查询记录（同一 Vert.x 实例上同一地址共用），第一次创建时在地址上注册查询
+     *
+     * @param vertx  Vert.x对象
+     * @param config slow_query 配置，可以为空（不记录）
+     * @return
+     */
+    public static SlowQueryLog of(Vertx vertx, JsonObject config) {
+        if (config == null) {
+            return DISABLED;
+        }
+
+        String address = config.getString("address", DEFAULT_ADDRESS);
+        LocalMap<String, SlowQueryLog> logs = vertx.sharedData().getLocalMap(LOGS);
+        SlowQueryLog existing = logs.get(address);
+        if (existing != null) {
+            return existing;
+        }
+
+        SlowQueryLog log = new SlowQueryLog(TimeUnit.MILLISECONDS.toNanos(config.getLong("threshold", 500L)),
+            Math.max(1, config.getInteger("capacity", 100)), config.getBoolean("redact", true),
+            config.getBoolean("explain", false));
+        existing = logs.putIfAbsent(address, log);
+        if (existing != null) {
+            return existing;
+        }
+
+        vertx.eventBus().<JsonObject>consumer(address, message -> {
+            JsonObject query = message.body() != null ? message.body() : new JsonObject();
+            message.reply(log.recent(query.getInteger("limit", log.capacity)));
+        });
+        return log;
+    }
+
+    public boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    public boolean isExplain() {
+        return explain;
+    }
+
+    /**
+     * 开始计时
+     *
+     * @param entityClass 实体类型，可以为空
+     * @param sql         SQL
+     * @param params      参数，可以为空
+     * @return
+     */
+    public Timer start(Class<?> entityClass, String sql, JsonArray params) {
+        return new Timer(entityClass, sql, params);
+    }
+
+    /**
+     * 最近的慢查询（新的在前）
+     *
+     * @param limit 最多条数
+     * @return
+     */
+    public synchronized JsonArray recent(int limit) {
+        JsonArray result = new JsonArray();
+        Iterator<JsonObject> it = entries.descendingIterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next().copy());
+        }
+        return result;
+    }
+
+    /**
+     * 清空记录
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 补充执行计划
+     *
+     * @param entry 慢查询记录
+     * @param plan  执行计划（EXPLAIN 的结果行，隐去常量时同样处理其中的字符串），失败时为空
+     * @param error 失败原因
+     */
+    public synchronized void attachPlan(JsonObject entry, JsonArray plan, String error) {
+        if (plan != null) {
+            if (redact) {
+                plan.forEach(row -> {
+                    JsonObject columns = (JsonObject) row;
+                    columns.fieldNames().forEach(name -> {
+                        Object value = columns.getValue(name);
+                        if (value instanceof String) {
+                            columns.put(name, redact((String) value));
+                        }
+                    });
+                });
+            }
+            entry.put("plan", plan);
+        } else {
+            entry.put("plan_error", error);
+        }
+    }
+
+    private synchronized void add(JsonObject entry) {
+        if (entries.size() >= capacity) {
+            entries.pollFirst();
+        }
+        entries.addLast(entry);
+    }
+
+    /**
+     * 隐去SQL中的字符串和数字常量
+     *
+     * @param sql SQL
+     * @return
+     */
+    public static String redact(String sql) {
+        return LITERAL.matcher(sql).replaceAll("?");
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 一条语句的计时：开始（等待准入和连接）-> 获得连接 -> 执行完成 -> 映射和回调完成
+     */
+    public class Timer {
+
+        private Class<?> entityClass;
+
+        private String sql;
+
+        private JsonArray params;
+
+        private long started = System.nanoTime();
+
+        private long acquired;
+
+        private long executed;
+
+        private int attempts;
+
+        private Timer(Class<?> entityClass, String sql, JsonArray params) {
+            this.entityClass = entityClass;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        /**
+         * 获得连接（重试时重新计算执行时间）
+         */
+        public void acquired() {
+            acquired = System.nanoTime();
+            attempts++;
+        }
+
+        /**
+         * 语句执行完成
+         */
+        public void executed() {
+            executed = System.nanoTime();
+        }
+
+        /**
+         * 结束计时，超过阈值时记录
+         *
+         * @param failed 语句是否失败
+         * @return 慢查询记录，未超过阈值时为空
+         */
+        public JsonObject finish(boolean failed) {
+            long finished = System.nanoTime();
+            if (finished - started < threshold) {
+                return null;
+            }
+
+            long acquiredAt = acquired > 0 ? acquired : finished;
+            long executedAt = executed > 0 ? executed : finished;
+
+            JsonObject entry = new JsonObject()
+                .put("time", System.currentTimeMillis())
+                .put("entity", entityClass != null ? entityClass.getName() : null)
+                .put("sql", redact ? redact(sql) : sql)
+                .put("total", millis(finished - started))
+                .put("pool_wait", millis(acquiredAt - started))
+                .put("execution", millis(executedAt - acquiredAt))
+                .put("mapping", millis(finished - executedAt))
+                .put("attempts", attempts)
+                .put("failed", failed);
+
+            if (params != null) {
+                JsonArray values = new JsonArray();
+                params.forEach(p -> values.add(redact ? "?" : p));
+                entry.put("params", values);
+            }
+
+            add(entry);
+            logger.warn("slow query {} ms : {}", entry.getLong("total"), entry.getString("sql"));
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Mekki on 2018/4/6.
+ * 事务统计
+ */
+public class TransactionMetrics {
+
+    private static AtomicLong opened = new AtomicLong();
+
+    private static AtomicLong committed = new AtomicLong();
+
+    private static AtomicLong rolledBack = new AtomicLong();
+
+    /**
+     * 超时被强制回滚的事务数
+     */
+    private static AtomicLong forcedRollbacks = new AtomicLong();
+
+    /**
+     * 当前未关闭的事务数
+     */
+    private static AtomicLong active = new AtomicLong();
+
+    private TransactionMetrics() {
+    }
+
+    public static void onOpen() {
+        opened.incrementAndGet();
+        active.incrementAndGet();
+    }
+
+    public static void onCommit() {
+        committed.incrementAndGet();
+    }
+
+    public static void onRollback() {
+        rolledBack.incrementAndGet();
+    }
+
+    public static void onForcedRollback() {
+        forcedRollbacks.incrementAndGet();
+    }
+
+    public static void onClose() {
+        active.decrementAndGet();
+    }
+
+    /**
+     * 当前统计
+     *
+     * @return
+     */
+    public static JsonObject snapshot() {
+        return new JsonObject()
+            .put("opened", opened.get())
+            .put("committed", committed.get())
+            .put("rolled_back", rolledBack.get())
+            .put("forced_rollbacks", forcedRollbacks.get())
+            .put("active", active.get());
+    }
+}
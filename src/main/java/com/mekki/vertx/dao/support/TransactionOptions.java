@@ -0,0 +1,70 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.ext.sql.TransactionIsolation;
+
+/**
+ * Created by Mekki on 2018/4/7.
+ * 事务选项（隔离级别、只读）
+ */
+public class TransactionOptions {
+
+    /**
+     * 隔离级别，为空时使用连接默认值
+     */
+    private TransactionIsolation isolation;
+
+    /**
+     * 只读事务，配置了 replica 时会使用只读库连接
+     */
+    private boolean readOnly;
+
+    private TransactionOptions(TransactionIsolation isolation, boolean readOnly) {
+        this.isolation = isolation;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 默认选项
+     *
+     * @return
+     */
+    public static TransactionOptions of() {
+        return new TransactionOptions(null, false);
+    }
+
+    /**
+     * 构造事务选项
+     *
+     * @param isolation 隔离级别
+     * @param readOnly  是否只读
+     * @return
+     */
+    public static TransactionOptions of(TransactionIsolation isolation, boolean readOnly) {
+        return new TransactionOptions(isolation, readOnly);
+    }
+
+    /**
+     * 只读事务（READ COMMITTED），适合报表类长查询
+     *
+     * @return
+     */
+    public static TransactionOptions readOnly() {
+        return new TransactionOptions(TransactionIsolation.READ_COMMITTED, true);
+    }
+
+    public TransactionIsolation getIsolation() {
+        return isolation;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionOptions{" +
+            "isolation=" + isolation +
+            ", readOnly=" + readOnly +
+            '}';
+    }
+}
@@ -0,0 +1,213 @@
+package com.mekki.vertx.dao.support;
+
+import com.mekki.vertx.dao.support.exception.RejectedException;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Created by Mekki on 2018/4/4.
+ * 写缓冲：积攒一个实体类型的新增，凑够 N 行或者等待 T 毫秒后合并为一条多行 INSERT
+ * <p>
+ * 配置示例：
+ * <pre>
+ * {
+ *     "max_rows": 500,
+ *     "max_delay": 50,
+ *     "max_pending": 10000
+ * }
+ * </pre>
+ */
+public class WriteBehindBuffer<E> {
+
+    private static Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private Vertx vertx;
+
+    private Class<E> entityClass;
+
+    /**
+     * 一次刷新的最大行数
+     */
+    private int maxRows;
+
+    /**
+     * 第一行进入缓冲后最多等待多久刷新（毫秒）
+     */
+    private long maxDelay;
+
+    /**
+     * 缓冲中与刷新中的总行数上限，超过时拒绝
+     */
+    private int maxPending;
+
+    /**
+     * 执行多行新增，结果为影响行数
+     */
+    private BiConsumer<List<E>, Handler<AsyncResult<Integer>>> flusher;
+
+    private List<Entry<E>> buffer = new ArrayList<>();
+
+    private int pending;
+
+    private long timerId = -1;
+
+    private Handler<Void> drainHandler;
+
+    private WriteBehindBuffer(Vertx vertx, Class<E> entityClass, JsonObject config,
+                              BiConsumer<List<E>, Handler<AsyncResult<Integer>>> flusher) {
+        this.vertx = vertx;
+        this.entityClass = entityClass;
+        this.flusher = flusher;
+
+        maxRows = Math.max(1, config.getInteger("max_rows", 500));
+        maxDelay = Math.max(1L, config.getLong("max_delay", 50L));
+        maxPending = Math.max(maxRows, config.getInteger("max_pending", maxRows * 20));
+    }
+
+    /**
+     * 构造写缓冲
+     *
+     * @param vertx       Vert.x对象
+     * @param entityClass 实体类型
+     * @param config      配置
+     * @param flusher     执行多行新增
+     * @param <E>         实体类型
+     * @return
+     */
+    public static <E> WriteBehindBuffer<E> of(Vertx vertx, Class<E> entityClass, JsonObject config,
+                                              BiConsumer<List<E>, Handler<AsyncResult<Integer>>> flusher) {
+        return new WriteBehindBuffer<>(vertx, entityClass, config != null ? config : new JsonObject(), flusher);
+    }
+
+    /**
+     * 加入缓冲，所在批次提交后回调
+     *
+     * @param e       实体
+     * @param handler 影响行数
+     */
+    public void add(E e, Handler<AsyncResult<Integer>> handler) {
+        List<Entry<E>> batch = null;
+
+        synchronized (this) {
+            if (pending >= maxPending) {
+                handler.handle(Future.failedFuture(new RejectedException("write behind buffer of "
+                    + entityClass.getName() + " is full: " + pending + " pending")));
+                return;
+            }
+
+            pending++;
+            buffer.add(new Entry<>(e, handler));
+
+            if (buffer.size() >= maxRows) {
+                batch = drainBuffer();
+            } else if (timerId < 0) {
+                timerId = vertx.setTimer(maxDelay, t -> flush(v -> {
+                }));
+            }
+        }
+
+        if (batch != null) {
+            flush(batch, v -> {
+            });
+        }
+    }
+
+    /**
+     * 立即刷新缓冲中的所有行
+     *
+     * @param handler 刷新完成后回调
+     */
+    public void flush(Handler<Void> handler) {
+        List<Entry<E>> batch;
+        synchronized (this) {
+            batch = drainBuffer();
+        }
+        flush(batch, handler);
+    }
+
+    private List<Entry<E>> drainBuffer() {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+
+        List<Entry<E>> batch = buffer;
+        buffer = new ArrayList<>();
+        return batch;
+    }
+
+    private void flush(List<Entry<E>> batch, Handler<Void> handler) {
+        if (batch.isEmpty()) {
+            handler.handle(null);
+            return;
+        }
+
+        List<E> items = new ArrayList<>(batch.size());
+        batch.forEach(entry -> items.add(entry.item));
+
+        flusher.accept(items, ar -> {
+            if (ar.succeeded()) {
+                logger.debug("flushed {} rows of {}", batch.size(), entityClass.getName());
+                batch.forEach(entry -> entry.handler.handle(Future.succeededFuture(1)));
+            } else {
+                logger.warn("flush {} rows of {} failed cause : {}", batch.size(), entityClass.getName(), ar.cause().getMessage());
+                batch.forEach(entry -> entry.handler.handle(Future.failedFuture(ar.cause())));
+            }
+
+            Handler<Void> drain;
+            synchronized (this) {
+                pending -= batch.size();
+                drain = pending <= maxPending / 2 ? drainHandler : null;
+                if (drain != null) {
+                    drainHandler = null;
+                }
+            }
+
+            if (drain != null) {
+                drain.handle(null);
+            }
+            handler.handle(null);
+        });
+    }
+
+    /**
+     * 缓冲是否已满（调用方应暂停生产并设置 drainHandler）
+     *
+     * @return
+     */
+    public synchronized boolean writeQueueFull() {
+        return pending >= maxPending;
+    }
+
+    /**
+     * 缓冲降到一半以下时回调一次
+     *
+     * @param handler 回调
+     */
+    public synchronized void drainHandler(Handler<Void> handler) {
+        drainHandler = handler;
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    private static class Entry<E> {
+        private E item;
+        private Handler<AsyncResult<Integer>> handler;
+
+        private Entry(E item, Handler<AsyncResult<Integer>> handler) {
+            this.item = item;
+            this.handler = handler;
+        }
+    }
+}
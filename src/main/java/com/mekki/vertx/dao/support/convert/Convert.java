@@ -0,0 +1,16 @@
+package com.mekki.vertx.dao.support.convert;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Created by Mekki on 2018/4/10.
+ * 指定字段使用的转换器（类似 JPA 2.1 的 AttributeConverter），转换器需要有无参构造方法
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Convert {
+    Class<? extends TypeConverter> value();
+}
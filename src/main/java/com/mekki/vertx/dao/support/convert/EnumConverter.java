@@ -0,0 +1,41 @@
+package com.mekki.vertx.dao.support.convert;
+
+import javax.persistence.EnumType;
+
+/**
+ * Created by Mekki on 2018/4/10.
+ * 枚举转换器（按名称或序号保存）
+ */
+public class EnumConverter<E extends Enum<E>> implements TypeConverter<E> {
+
+    private Class<E> enumClass;
+
+    private E[] constants;
+
+    private EnumType type;
+
+    public EnumConverter(Class<E> enumClass, EnumType type) {
+        this.enumClass = enumClass;
+        this.type = type;
+
+        constants = enumClass.getEnumConstants();
+    }
+
+    @Override
+    public Object toSql(E value) {
+        return type == EnumType.ORDINAL ? (Object) value.ordinal() : value.name();
+    }
+
+    @Override
+    public E fromSql(Object value) {
+        if (value instanceof Number) {
+            return constants[((Number) value).intValue()];
+        }
+
+        String name = value.toString();
+        if (type == EnumType.ORDINAL && !name.isEmpty() && Character.isDigit(name.charAt(0))) {
+            return constants[Integer.parseInt(name)];
+        }
+        return Enum.valueOf(enumClass, name);
+    }
+}
@@ -0,0 +1,53 @@
+package com.mekki.vertx.dao.support.convert;
+
+import java.util.function.Function;
+
+/**
+ * Created by Mekki on 2018/4/10.
+ * Java类型 <-> 数据库值 转换器
+ * <p>
+ * toSql 返回值只能是 null、String、Number、Boolean 或 byte[]；
+ * fromSql 的参数是 Vert.x JDBC 读出的值（String、Number、Boolean，时间类型为 ISO-8601 字符串，二进制为 Base64 字符串）
+ *
+ * @param <J> Java类型
+ */
+public interface TypeConverter<J> {
+
+    /**
+     * Java值 -> 数据库值
+     *
+     * @param value Java值，不为 null
+     * @return
+     */
+    Object toSql(J value);
+
+    /**
+     * 数据库值 -> Java值
+     *
+     * @param value 数据库值，不为 null
+     * @return
+     */
+    J fromSql(Object value);
+
+    /**
+     * 用两个函数构造转换器
+     *
+     * @param toSql   Java值 -> 数据库值
+     * @param fromSql 数据库值 -> Java值
+     * @param <J>     Java类型
+     * @return
+     */
+    static <J> TypeConverter<J> of(Function<J, Object> toSql, Function<Object, J> fromSql) {
+        return new TypeConverter<J>() {
+            @Override
+            public Object toSql(J value) {
+                return toSql.apply(value);
+            }
+
+            @Override
+            public J fromSql(Object value) {
+                return fromSql.apply(value);
+            }
+        };
+    }
+}
@@ -0,0 +1,297 @@
+package com.mekki.vertx.dao.support.convert;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Mekki on 2018/4/10.
+ * 转换器注册表，按字段解析一次
+ * <p>
+ * 解析顺序：@Convert 指定的转换器 > 枚举（@Enumerated，未标注时按名称保存）> 按字段类型注册的转换器 > toString
+ */
+@SuppressWarnings("unchecked")
+public class TypeConverters {
+
+    private static Logger logger = LoggerFactory.getLogger(TypeConverters.class);
+
+    private static final DateTimeFormatter LOCAL_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final DateTimeFormatter LOCAL_DATE_TIME_PARSER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSSSSSSSS][.SSSSSS][.SSS][.S]");
+
+    private static Map<Class<?>, TypeConverter<?>> converters = new ConcurrentHashMap<>();
+
+    /**
+     * @Convert 指定的转换器实例
+     */
+    private static Map<Class<?>, TypeConverter<?>> userConverters = new ConcurrentHashMap<>();
+
+    private static final TypeConverter<Object> FALLBACK = TypeConverter.of(Object::toString, value -> value);
+
+    static {
+        register(String.class, TypeConverter.of(value -> value, Object::toString));
+        register(Integer.class, TypeConverter.of(value -> value, value -> toNumber(value).intValue()));
+        register(Long.class, TypeConverter.of(value -> value, value -> toNumber(value).longValue()));
+        register(Short.class, TypeConverter.of(value -> value, value -> toNumber(value).shortValue()));
+        register(Byte.class, TypeConverter.of(value -> value, value -> toNumber(value).byteValue()));
+        register(Double.class, TypeConverter.of(value -> value, value -> toNumber(value).doubleValue()));
+        register(Float.class, TypeConverter.of(value -> value, value -> toNumber(value).floatValue()));
+        register(Boolean.class, TypeConverter.of(value -> value, TypeConverters::toBoolean));
+        register(BigDecimal.class, TypeConverter.of(BigDecimal::toPlainString,
+            value -> value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString())));
+        register(BigInteger.class, TypeConverter.of(BigInteger::toString,
+            value -> value instanceof BigInteger ? (BigInteger) value : new BigDecimal(value.toString()).toBigInteger()));
+        register(Character.class, TypeConverter.of(String::valueOf, value -> value.toString().charAt(0)));
+
+        register(Date.class, TypeConverter.of(
+            value -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(value),
+            value -> Date.from(toInstant(value))));
+        register(java.sql.Timestamp.class, TypeConverter.of(
+            value -> value.toLocalDateTime().format(LOCAL_DATE_TIME),
+            value -> java.sql.Timestamp.from(toInstant(value))));
+        register(Instant.class, TypeConverter.of(
+            value -> LocalDateTime.ofInstant(value, ZoneId.systemDefault()).format(LOCAL_DATE_TIME),
+            TypeConverters::toInstant));
+        register(LocalDateTime.class, TypeConverter.of(
+            value -> value.format(LOCAL_DATE_TIME),
+            value -> LocalDateTime.ofInstant(toInstant(value), ZoneId.systemDefault())));
+        register(LocalDate.class, TypeConverter.of(
+            LocalDate::toString,
+            value -> isDateOnly(value) ? LocalDate.parse(value.toString())
+                : LocalDateTime.ofInstant(toInstant(value), ZoneId.systemDefault()).toLocalDate()));
+        register(LocalTime.class, TypeConverter.of(
+            LocalTime::toString,
+            value -> LocalTime.parse(stripOffset(value.toString()))));
+        register(OffsetDateTime.class, TypeConverter.of(
+            value -> LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault()).format(LOCAL_DATE_TIME),
+            value -> OffsetDateTime.ofInstant(toInstant(value), ZoneId.systemDefault())));
+        register(ZonedDateTime.class, TypeConverter.of(
+            value -> LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault()).format(LOCAL_DATE_TIME),
+            value -> ZonedDateTime.ofInstant(toInstant(value), ZoneId.systemDefault())));
+
+        register(UUID.class, TypeConverter.of(UUID::toString, TypeConverters::toUUID));
+        register(byte[].class, TypeConverter.of(value -> value, TypeConverters::toBytes));
+
+        register(JsonObject.class, TypeConverter.of(JsonObject::encode, value -> {
+            if (value instanceof JsonObject) {
+                return (JsonObject) value;
+            }
+            return value instanceof Map ? new JsonObject((Map<String, Object>) value) : new JsonObject(value.toString());
+        }));
+        register(JsonArray.class, TypeConverter.of(JsonArray::encode, value -> {
+            if (value instanceof JsonArray) {
+                return (JsonArray) value;
+            }
+            return value instanceof List ? new JsonArray((List) value) : new JsonArray(value.toString());
+        }));
+    }
+
+    private TypeConverters() {
+    }
+
+    /**
+     * 注册转换器（在实体第一次使用前注册）
+     *
+     * @param type      Java类型
+     * @param converter 转换器
+     * @param <J>       Java类型
+     */
+    public static <J> void register(Class<J> type, TypeConverter<J> converter) {
+        converters.put(type, converter);
+    }
+
+    /**
+     * 解析字段的转换器
+     *
+     * @param field 字段
+     * @return
+     */
+    public static TypeConverter<Object> resolve(Field field) {
+        Convert convert = field.getAnnotation(Convert.class);
+        Enumerated enumerated = field.getAnnotation(Enumerated.class);
+
+        return resolve(field.getDeclaringClass().getName() + "." + field.getName(), field.getType(),
+            convert != null ? convert.value() : null, enumerated != null ? enumerated.value() : null);
+    }
+
+    /**
+     * 解析转换器
+     *
+     * @param name           字段名称（用于日志）
+     * @param fieldType      字段类型
+     * @param converterClass @Convert 指定的转换器，可以为空
+     * @param enumType       @Enumerated 指定的保存方式，为空时按名称保存
+     * @return
+     */
+    public static TypeConverter<Object> resolve(String name, Class<?> fieldType,
+                                                Class<? extends TypeConverter> converterClass, EnumType enumType) {
+        if (converterClass != null) {
+            return (TypeConverter<Object>) userConverters.computeIfAbsent(converterClass, TypeConverters::instantiate);
+        }
+
+        Class<?> type = wrap(fieldType);
+
+        if (type.isEnum()) {
+            return new EnumConverter(type, enumType != null ? enumType : EnumType.STRING);
+        }
+
+        TypeConverter<?> converter = converters.get(type);
+        if (converter == null) {
+            logger.warn("no converter for {} ({}), using toString", name, type.getName());
+            return FALLBACK;
+        }
+        return (TypeConverter<Object>) converter;
+    }
+
+    private static TypeConverter<?> instantiate(Class<?> converterClass) {
+        try {
+            return (TypeConverter<?>) converterClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("cannot instantiate converter " + converterClass.getName(), e);
+        }
+    }
+
+    /**
+     * 基本类型 -> 包装类型
+     *
+     * @param type 类型
+     * @return
+     */
+    public static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        }
+        return type;
+    }
+
+    public static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    public static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+
+        String s = value.toString();
+        return "1".equals(s) || "true".equalsIgnoreCase(s) || "y".equalsIgnoreCase(s);
+    }
+
+    /**
+     * 数据库时间值 -> Instant（无时区的值按系统时区解析）
+     *
+     * @param value 数据库值
+     * @return
+     */
+    public static Instant toInstant(Object value) {
+        if (value instanceof Instant) {
+            return (Instant) value;
+        }
+
+        if (value instanceof Date) {
+            return ((Date) value).toInstant();
+        }
+
+        if (value instanceof Number) {
+            return Instant.ofEpochMilli(((Number) value).longValue());
+        }
+
+        String s = value.toString();
+        try {
+            return OffsetDateTime.parse(s).toInstant();
+        } catch (DateTimeParseException ignored) {
+        }
+
+        if (isDateOnly(s)) {
+            return LocalDate.parse(s).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        }
+
+        String local = s.replace('T', ' ');
+        return LocalDateTime.parse(local, LOCAL_DATE_TIME_PARSER).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static boolean isDateOnly(Object value) {
+        String s = value.toString();
+        return s.length() == 10 && s.charAt(4) == '-' && s.charAt(7) == '-';
+    }
+
+    private static String stripOffset(String time) {
+        int end = time.length();
+        for (int i = 0; i < time.length(); i++) {
+            char c = time.charAt(i);
+            if (c == 'Z' || c == '+' || (c == '-' && i > 0)) {
+                end = i;
+                break;
+            }
+        }
+        return time.substring(0, end);
+    }
+
+    private static UUID toUUID(Object value) {
+        if (value instanceof byte[] || (value instanceof String && ((String) value).length() != 36)) {
+            ByteBuffer buffer = ByteBuffer.wrap(toBytes(value));
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return UUID.fromString(value.toString());
+    }
+
+    private static byte[] toBytes(Object value) {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        return Base64.getDecoder().decode(value.toString());
+    }
+}
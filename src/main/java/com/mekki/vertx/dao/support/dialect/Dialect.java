@@ -0,0 +1,257 @@
+package com.mekki.vertx.dao.support.dialect;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/11.
+ * 数据库方言：标识符引用、字面量、分页、UPSERT、主键回写
+ * <p>
+ * jdbcConfig 中指定 "dialect": "mysql" | "postgresql" | "h2"，未指定时按 url 前缀（jdbc:postgresql: 等）
+ * 或 driver_class 类名推断，默认 MySQL
+ */
+public abstract class Dialect {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final Dialect MYSQL = new MySqlDialect();
+
+    private static final Dialect POSTGRESQL = new PostgreSqlDialect();
+
+    private static final Dialect H2 = new H2Dialect();
+
+    /**
+     * 按配置选择方言
+     *
+     * @param jdbcConfig jdbc 配置
+     * @return
+     */
+    public static Dialect of(JsonObject jdbcConfig) {
+        String name = jdbcConfig.getString("dialect");
+        if (name != null) {
+            return of(name);
+        }
+
+        String url = jdbcConfig.getString("url", "").toLowerCase();
+        if (url.startsWith("jdbc:postgresql:")) {
+            return POSTGRESQL;
+        } else if (url.startsWith("jdbc:h2:")) {
+            return H2;
+        } else if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+            return MYSQL;
+        }
+
+        switch (jdbcConfig.getString("driver_class", "")) {
+            case "org.postgresql.Driver":
+                return POSTGRESQL;
+            case "org.h2.Driver":
+                return H2;
+            default:
+                return MYSQL;
+        }
+    }
+
+    /**
+     * 按名称选择方言
+     *
+     * @param name mysql、postgresql 或 h2
+     * @return
+     */
+    public static Dialect of(String name) {
+        switch (name.toLowerCase()) {
+            case "mysql":
+            case "mariadb":
+                return MYSQL;
+            case "postgresql":
+            case "postgres":
+                return POSTGRESQL;
+            case "h2":
+                return H2;
+            default:
+                throw new IllegalArgumentException("unsupported dialect " + name);
+        }
+    }
+
+    public static Dialect mysql() {
+        return MYSQL;
+    }
+
+    public static Dialect postgresql() {
+        return POSTGRESQL;
+    }
+
+    public static Dialect h2() {
+        return H2;
+    }
+
+    public abstract String getName();
+
+    /**
+     * 引用标识符
+     *
+     * @param identifier 表名或列名
+     * @return
+     */
+    public abstract String quote(String identifier);
+
+    /**
+     * 分页子句
+     *
+     * @param startRow 开始行数
+     * @param size     分页大小
+     * @return
+     */
+    public abstract String page(int startRow, int size);
+
+    /**
+     * 新增或更新语句
+     *
+     * @param table         表名（已引用）
+     * @param columns       列名（已引用）
+     * @param values        值
+     * @param pk            主键列名（已引用）
+     * @param updateColumns 冲突时更新的列名（已引用）
+     * @return
+     */
+    public abstract String upsert(String table, String columns, String values, String pk, List<String> updateColumns);
+
+    /**
+     * 新增语句后追加的主键返回子句，通过 JDBC generated keys 取主键时为空
+     *
+     * @param pk 主键列名（已引用）
+     * @return
+     */
+    public String returning(String pk) {
+        return "";
+    }
+
+    /**
+     * 自增主键为空时写入的值
+     *
+     * @return
+     */
+    public String generatedValue() {
+        return "DEFAULT";
+    }
+
+    /**
+     * SQL字面量
+     *
+     * @param value 数据库值（已经过转换器）
+     * @return
+     */
+    public String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+
+        if (value instanceof Boolean) {
+            return booleanLiteral((Boolean) value);
+        }
+
+        if (value instanceof byte[]) {
+            return binaryLiteral(hex((byte[]) value));
+        }
+
+        String s = value.toString();
+        StringBuilder quoted = new StringBuilder(s.length() + 2).append('\'');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\'' || (c == '\\' && escapeBackslash())) {
+                quoted.append(c);
+            }
+            quoted.append(c);
+        }
+        return quoted.append('\'').toString();
+    }
+
+    protected String booleanLiteral(boolean value) {
+        return value ? "TRUE" : "FALSE";
+    }
+
+    protected String binaryLiteral(String hex) {
+        return "X'" + hex + "'";
+    }
+
+    /**
+     * 字符串中的反斜杠是否需要转义
+     *
+     * @return
+     */
+    protected boolean escapeBackslash() {
+        return false;
+    }
+
+    /**
+     * 二进制参数占位符（JsonArray 不能保存 byte[]，参数以字符串传输）
+     *
+     * @return
+     */
+    public String binaryPlaceholder() {
+        return "?";
+    }
+
+    /**
+     * 二进制参数值，与 binaryPlaceholder 对应
+     *
+     * @param bytes 二进制值
+     * @return
+     */
+    public String binaryParam(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * 开启只读事务的语句，不支持时为空
+     *
+     * @return
+     */
+    public String readOnlySql() {
+        return "SET TRANSACTION READ ONLY";
+    }
+
+    /**
+     * 释放保存点的语句，不支持时为空
+     *
+     * @param name 保存点名称
+     * @return
+     */
+    public String releaseSavepointSql(String name) {
+        return "RELEASE SAVEPOINT " + name;
+    }
+
+    /**
+     * 取序列下一个值的语句（结果第一列），不支持序列时为空
+     *
+     * @param sequence 序列名
+     * @return
+     */
+    public String nextValueSql(String sequence) {
+        return null;
+    }
+
+    /**
+     * 获取执行计划的语句
+     *
+     * @param sql SQL
+     * @return
+     */
+    public String explainSql(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    protected static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
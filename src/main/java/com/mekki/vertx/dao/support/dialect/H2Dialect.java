@@ -0,0 +1,53 @@
+package com.mekki.vertx.dao.support.dialect;
+
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/11.
+ * H2 方言（用于嵌入式测试），标识符大小写敏感，建表时需要使用相同的小写名称或在 url 中加 DATABASE_TO_UPPER=FALSE
+ */
+class H2Dialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier + "\"";
+    }
+
+    @Override
+    public String page(int startRow, int size) {
+        return "OFFSET " + startRow + " ROWS FETCH NEXT " + size + " ROWS ONLY";
+    }
+
+    @Override
+    public String upsert(String table, String columns, String values, String pk, List<String> updateColumns) {
+        return "MERGE INTO " + table + " (" + columns + ") KEY (" + pk + ") VALUES (" + values + ");";
+    }
+
+    /**
+     * H2 把十六进制字符串隐式转换为二进制
+     */
+    @Override
+    public String binaryParam(byte[] bytes) {
+        return hex(bytes);
+    }
+
+    @Override
+    public String nextValueSql(String sequence) {
+        return "SELECT NEXT VALUE FOR " + sequence;
+    }
+
+    @Override
+    public String readOnlySql() {
+        return null;
+    }
+
+    @Override
+    public String releaseSavepointSql(String name) {
+        return null;
+    }
+}
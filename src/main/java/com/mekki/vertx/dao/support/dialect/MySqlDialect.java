@@ -0,0 +1,53 @@
+package com.mekki.vertx.dao.support.dialect;
+
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/11.
+ * MySQL 方言，主键通过 JDBC generated keys 回写
+ */
+class MySqlDialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "`" + identifier + "`";
+    }
+
+    @Override
+    public String page(int startRow, int size) {
+        return "LIMIT " + startRow + ", " + size;
+    }
+
+    @Override
+    public String upsert(String table, String columns, String values, String pk, List<String> updateColumns) {
+        String update = updateColumns.isEmpty() ? pk + " = " + pk
+            : updateColumns.stream().map(c -> c + " = VALUES(" + c + ")").reduce((l, r) -> l + ", " + r).get();
+
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE " + update + ";";
+    }
+
+    @Override
+    public String generatedValue() {
+        return "0";
+    }
+
+    @Override
+    protected String booleanLiteral(boolean value) {
+        return value ? "1" : "0";
+    }
+
+    @Override
+    protected boolean escapeBackslash() {
+        return true;
+    }
+
+    @Override
+    public String binaryPlaceholder() {
+        return "FROM_BASE64(?)";
+    }
+}
@@ -0,0 +1,53 @@
+package com.mekki.vertx.dao.support.dialect;
+
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/11.
+ * PostgreSQL 方言，新增语句用 RETURNING 回写主键
+ */
+class PostgreSqlDialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "postgresql";
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier + "\"";
+    }
+
+    @Override
+    public String page(int startRow, int size) {
+        return "LIMIT " + size + " OFFSET " + startRow;
+    }
+
+    @Override
+    public String upsert(String table, String columns, String values, String pk, List<String> updateColumns) {
+        String update = updateColumns.isEmpty() ? "DO NOTHING"
+            : "DO UPDATE SET " + updateColumns.stream().map(c -> c + " = EXCLUDED." + c).reduce((l, r) -> l + ", " + r).get();
+
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") ON CONFLICT (" + pk + ") " + update + ";";
+    }
+
+    @Override
+    public String nextValueSql(String sequence) {
+        return "SELECT nextval(" + literal(sequence) + ")";
+    }
+
+    @Override
+    public String returning(String pk) {
+        return " RETURNING " + pk;
+    }
+
+    @Override
+    protected String binaryLiteral(String hex) {
+        return "'\\x" + hex + "'::bytea";
+    }
+
+    @Override
+    public String binaryPlaceholder() {
+        return "decode(?, 'base64')";
+    }
+}
@@ -0,0 +1,11 @@
+package com.mekki.vertx.dao.support.exception;
+
+/**
+ * Created by Mekki on 2018/4/2.
+ * 熔断器打开时快速失败的异常
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mekki.vertx.dao.support.exception;
+
+/**
+ * Created by Mekki on 2018/4/3.
+ * 并发已满且等待队列已满时拒绝执行的异常
+ */
+public class RejectedException extends RuntimeException {
+    public RejectedException(String message) {
+        super(message);
+    }
+}
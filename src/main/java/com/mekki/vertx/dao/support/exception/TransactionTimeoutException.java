@@ -0,0 +1,11 @@
+package com.mekki.vertx.dao.support.exception;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 事务打开时间超过 transaction.timeout，被看门狗强制回滚的异常
+ */
+public class TransactionTimeoutException extends RuntimeException {
+    public TransactionTimeoutException(String message) {
+        super(message);
+    }
+}
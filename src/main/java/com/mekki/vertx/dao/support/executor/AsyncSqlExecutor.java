@@ -0,0 +1,72 @@
+package com.mekki.vertx.dao.support.executor;
+
+import com.mekki.vertx.dao.support.dialect.Dialect;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.asyncsql.AsyncSQLClient;
+import io.vertx.ext.asyncsql.MySQLClient;
+import io.vertx.ext.asyncsql.PostgreSQLClient;
+import io.vertx.ext.sql.SQLConnection;
+
+/**
+ * Created by Mekki on 2018/4/12.
+ * 非阻塞执行后端（vertx-mysql-postgresql-client），语句直接在 event loop 上收发，不占用 worker 线程
+ * <p>
+ * 需要在项目中加入 io.vertx:vertx-mysql-postgresql-client 依赖
+ */
+public class AsyncSqlExecutor implements SqlExecutor {
+
+    private AsyncSQLClient client;
+
+    private String name;
+
+    private String dataSourceName;
+
+    private AsyncSqlExecutor(AsyncSQLClient client, String name, String dataSourceName) {
+        this.client = client;
+        this.name = name;
+        this.dataSourceName = dataSourceName;
+    }
+
+    /**
+     * 按方言选择 MySQL 或 PostgreSQL 客户端
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置，连接参数取其中的 "async" 配置
+     * @return
+     */
+    public static AsyncSqlExecutor of(Vertx vertx, JsonObject jdbcConfig) {
+        JsonObject config = jdbcConfig.getJsonObject("async", jdbcConfig);
+        String dataSourceName = jdbcConfig.getString("datasource_name", config.getString("datasource_name", "vertx-dao-async"));
+
+        Dialect dialect = Dialect.of(jdbcConfig);
+        if (dialect == Dialect.mysql()) {
+            return new AsyncSqlExecutor(MySQLClient.createShared(vertx, config, dataSourceName), "async-mysql", dataSourceName);
+        } else if (dialect == Dialect.postgresql()) {
+            return new AsyncSqlExecutor(PostgreSQLClient.createShared(vertx, config, dataSourceName), "async-postgresql", dataSourceName);
+        }
+        throw new IllegalArgumentException("async executor does not support dialect " + dialect);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Override
+    public void getConnection(Handler<AsyncResult<SQLConnection>> handler) {
+        client.getConnection(handler);
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        client.close(handler);
+    }
+}
@@ -0,0 +1,75 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.sql.SQLConnection;
+
+/**
+ * Created by Mekki on 2018/4/12.
+ * JDBC 执行后端，阻塞的 JDBC 调用运行在 worker 线程池
+ */
+public class JdbcSqlExecutor implements SqlExecutor {
+
+    private JDBCClient client;
+
+    private String dataSourceName;
+
+    private JdbcSqlExecutor(JDBCClient client, String dataSourceName) {
+        this.client = client;
+        this.dataSourceName = dataSourceName;
+    }
+
+    /**
+     * 使用 jdbcConfig 中 datasource_name 指定的数据源，未指定时使用默认数据源
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @return
+     */
+    public static JdbcSqlExecutor of(Vertx vertx, JsonObject jdbcConfig) {
+        String dataSourceName = jdbcConfig.getString("datasource_name");
+        if (dataSourceName != null) {
+            return of(vertx, jdbcConfig, dataSourceName);
+        }
+        return new JdbcSqlExecutor(JDBCClient.createShared(vertx, jdbcConfig), JDBCClient.DEFAULT_DS_NAME);
+    }
+
+    /**
+     * 使用指定名称的数据源
+     *
+     * @param vertx          Vert.x对象
+     * @param jdbcConfig     jdbc 配置
+     * @param dataSourceName 数据源名称
+     * @return
+     */
+    public static JdbcSqlExecutor of(Vertx vertx, JsonObject jdbcConfig, String dataSourceName) {
+        return new JdbcSqlExecutor(JDBCClient.createShared(vertx, jdbcConfig, dataSourceName), dataSourceName);
+    }
+
+    public JDBCClient getClient() {
+        return client;
+    }
+
+    @Override
+    public String getName() {
+        return "jdbc";
+    }
+
+    @Override
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    @Override
+    public void getConnection(Handler<AsyncResult<SQLConnection>> handler) {
+        client.getConnection(handler);
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        client.close(handler);
+    }
+}
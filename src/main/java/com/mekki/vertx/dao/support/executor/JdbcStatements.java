@@ -0,0 +1,309 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 阻塞的 JDBC 语句执行与结果转换，只用 JDBC 和 Vert.x 公开 API
+ * <p>
+ * 结果值的转换与 Vert.x JDBC 一致：时间类型为 ISO-8601 字符串（TIMESTAMP 为 UTC），整数 DECIMAL 为 BigInteger，
+ * 其他 DECIMAL 为 Double，CLOB 为字符串，BLOB 为 byte[]；参数按原值 setObject（DAO 已经用 TypeConverter 转换过）
+ */
+final class JdbcStatements {
+
+    private JdbcStatements() {
+    }
+
+    static Void execute(Connection conn, SQLOptions options, String sql) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            applyOptions(statement, options);
+            statement.execute(sql);
+        }
+        return null;
+    }
+
+    static ResultSet query(Connection conn, SQLOptions options, String sql, JsonArray params) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            applyOptions(statement, options);
+            fill(statement, params);
+
+            boolean hasResults = statement.execute();
+            ResultSet first = null;
+            ResultSet last = null;
+            while (hasResults) {
+                try (java.sql.ResultSet rs = statement.getResultSet()) {
+                    ResultSet current = asResultSet(rs);
+                    if (first == null) {
+                        first = current;
+                    } else {
+                        last.setNext(current);
+                    }
+                    last = current;
+                }
+                hasResults = statement.getMoreResults();
+            }
+            return first != null ? first : new ResultSet(new ArrayList<>(), new ArrayList<>(), null);
+        }
+    }
+
+    static UpdateResult update(Connection conn, SQLOptions options, String sql, JsonArray params) throws SQLException {
+        try (PreparedStatement statement = prepareUpdate(conn, options, sql)) {
+            applyOptions(statement, options);
+            fill(statement, params);
+
+            int updated = statement.executeUpdate();
+            JsonArray keys = new JsonArray();
+            if (options.isAutoGeneratedKeys()) {
+                try (java.sql.ResultSet rs = statement.getGeneratedKeys()) {
+                    while (rs != null && rs.next()) {
+                        keys.addAll(row(rs, rs.getMetaData().getColumnCount()));
+                    }
+                }
+            }
+            return new UpdateResult(updated, keys);
+        }
+    }
+
+    static ResultSet call(Connection conn, SQLOptions options, String sql, JsonArray params, JsonArray outputs)
+        throws SQLException {
+        try (CallableStatement statement = conn.prepareCall(sql)) {
+            applyOptions(statement, options);
+            fill(statement, params, outputs);
+
+            boolean hasResults = statement.execute();
+            if (hasResults) {
+                try (java.sql.ResultSet rs = statement.getResultSet()) {
+                    return asResultSet(rs);
+                }
+            }
+
+            ResultSet result = new ResultSet(new ArrayList<>(), new ArrayList<>(), null);
+            if (outputs != null && !outputs.isEmpty()) {
+                JsonArray output = new JsonArray();
+                for (int i = 0; i < outputs.size(); i++) {
+                    output.add(outputs.getValue(i) != null ? convert(statement.getObject(i + 1)) : null);
+                }
+                result.setOutput(output);
+            }
+            return result;
+        }
+    }
+
+    static List<Integer> batch(Connection conn, SQLOptions options, List<String> sqlStatements) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            applyOptions(statement, options);
+            for (String sql : sqlStatements) {
+                statement.addBatch(sql);
+            }
+            return counts(statement.executeBatch());
+        }
+    }
+
+    static List<Integer> batch(Connection conn, SQLOptions options, String sql, List<JsonArray> args)
+        throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            applyOptions(statement, options);
+            for (JsonArray params : args) {
+                fill(statement, params);
+                statement.addBatch();
+            }
+            return counts(statement.executeBatch());
+        }
+    }
+
+    static List<Integer> batchCall(Connection conn, SQLOptions options, String sql, List<JsonArray> inArgs,
+                                   List<JsonArray> outArgs) throws SQLException {
+        try (CallableStatement statement = conn.prepareCall(sql)) {
+            applyOptions(statement, options);
+            for (int i = 0; i < inArgs.size(); i++) {
+                fill(statement, inArgs.get(i), outArgs != null && i < outArgs.size() ? outArgs.get(i) : null);
+                statement.addBatch();
+            }
+            return counts(statement.executeBatch());
+        }
+    }
+
+    static void applyOptions(Statement statement, SQLOptions options) throws SQLException {
+        if (options.getQueryTimeout() > 0) {
+            statement.setQueryTimeout(options.getQueryTimeout());
+        }
+        if (options.getFetchDirection() != null) {
+            statement.setFetchDirection(options.getFetchDirection().getType());
+        }
+        if (options.getFetchSize() > 0) {
+            statement.setFetchSize(options.getFetchSize());
+        }
+    }
+
+    static void fill(PreparedStatement statement, JsonArray params) throws SQLException {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.getValue(i));
+        }
+    }
+
+    /**
+     * 存储过程参数：outputs 中非空的位置注册为输出参数（值为 JDBCType 名称），其他位置按输入参数设置
+     */
+    private static void fill(CallableStatement statement, JsonArray params, JsonArray outputs) throws SQLException {
+        int count = Math.max(params != null ? params.size() : 0, outputs != null ? outputs.size() : 0);
+        for (int i = 0; i < count; i++) {
+            Object out = outputs != null && i < outputs.size() ? outputs.getValue(i) : null;
+            if (out != null) {
+                statement.registerOutParameter(i + 1, JDBCType.valueOf(out.toString()));
+            }
+            Object in = params != null && i < params.size() ? params.getValue(i) : null;
+            if (in != null || out == null) {
+                statement.setObject(i + 1, in);
+            }
+        }
+    }
+
+    static List<String> columns(java.sql.ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<String> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnLabel(i));
+        }
+        return columns;
+    }
+
+    static JsonArray row(java.sql.ResultSet rs, int columnCount) throws SQLException {
+        JsonArray row = new JsonArray();
+        for (int i = 1; i <= columnCount; i++) {
+            Object value = convert(rs.getObject(i));
+            if (value != null) {
+                row.add(value);
+            } else {
+                row.addNull();
+            }
+        }
+        return row;
+    }
+
+    private static ResultSet asResultSet(java.sql.ResultSet rs) throws SQLException {
+        List<String> columns = columns(rs);
+        List<JsonArray> results = new ArrayList<>();
+        while (rs.next()) {
+            results.add(row(rs, columns.size()));
+        }
+        return new ResultSet(columns, results, null);
+    }
+
+    private static PreparedStatement prepareUpdate(Connection conn, SQLOptions options, String sql)
+        throws SQLException {
+        if (!options.isAutoGeneratedKeys()) {
+            return conn.prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+        }
+
+        JsonArray indexes = options.getAutoGeneratedKeysIndexes();
+        if (indexes == null || indexes.isEmpty()) {
+            return conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+
+        if (indexes.getValue(0) instanceof Number) {
+            int[] columnIndexes = new int[indexes.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                columnIndexes[i] = indexes.getInteger(i);
+            }
+            return conn.prepareStatement(sql, columnIndexes);
+        }
+
+        String[] columnNames = new String[indexes.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = indexes.getString(i);
+        }
+        return conn.prepareStatement(sql, columnNames);
+    }
+
+    private static List<Integer> counts(int[] updated) {
+        List<Integer> counts = new ArrayList<>(updated.length);
+        for (int count : updated) {
+            counts.add(count);
+        }
+        return counts;
+    }
+
+    /**
+     * JDBC 值 -> JSON 兼容的值
+     */
+    static Object convert(Object value) throws SQLException {
+        if (value == null || value instanceof Boolean || value instanceof String || value instanceof byte[]) {
+            return value;
+        }
+
+        if (value instanceof Number) {
+            if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                return decimal.scale() == 0 ? decimal.toBigInteger() : decimal.doubleValue();
+            }
+            return value;
+        }
+
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_TIME);
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+        if (value instanceof Timestamp) {
+            return OffsetDateTime.ofInstant(((Timestamp) value).toInstant(), ZoneOffset.UTC)
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        }
+
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } finally {
+                clob.free();
+            }
+        }
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            try {
+                return blob.getBytes(1, (int) blob.length());
+            } finally {
+                blob.free();
+            }
+        }
+        if (value instanceof Array) {
+            Array array = (Array) value;
+            try {
+                JsonArray elements = new JsonArray();
+                for (Object element : (Object[]) array.getArray()) {
+                    elements.add(convert(element));
+                }
+                return elements;
+            } finally {
+                array.free();
+            }
+        }
+
+        return value.toString();
+    }
+}
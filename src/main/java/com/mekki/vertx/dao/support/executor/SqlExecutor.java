@@ -0,0 +1,80 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.SQLConnection;
+
+/**
+ * Created by Mekki on 2018/4/12.
+ * SQL执行后端，负责提供 SQLConnection，实体映射与 SQL 生成与后端无关
+ * <p>
+ * jdbcConfig 中的 "executor"：
+ * <ul>
+ * <li>jdbc（默认）：JDBC 驱动 + worker 线程池</li>
+ * <li>async：vertx-mysql-postgresql-client 非阻塞驱动，连接参数取 "async" 配置，未配置时使用 jdbcConfig</li>
+ * <li>virtual：JDBC 调用在虚拟线程上执行（JDK 21+，低版本退回 jdbc）</li>
+ * <li>类名：自定义实现，需要 (Vertx, JsonObject) 构造方法</li>
+ * </ul>
+ */
+public interface SqlExecutor {
+
+    /**
+     * 按配置构造执行后端
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @return
+     */
+    static SqlExecutor of(Vertx vertx, JsonObject jdbcConfig) {
+        String executor = jdbcConfig.getString("executor", "jdbc");
+
+        switch (executor) {
+            case "jdbc":
+                return JdbcSqlExecutor.of(vertx, jdbcConfig);
+            case "async":
+                return AsyncSqlExecutor.of(vertx, jdbcConfig);
+            case "virtual":
+                return VirtualThreadSqlExecutor.of(vertx, jdbcConfig);
+            default:
+                try {
+                    return (SqlExecutor) Class.forName(executor)
+                        .getConstructor(Vertx.class, JsonObject.class)
+                        .newInstance(vertx, jdbcConfig);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("cannot create sql executor " + executor, e);
+                }
+        }
+    }
+
+    /**
+     * 后端名称
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * 共享数据源的名称（同名的后端共用一个连接池）
+     *
+     * @return
+     */
+    default String getDataSourceName() {
+        return getName();
+    }
+
+    /**
+     * 获取连接
+     *
+     * @param handler 连接
+     */
+    void getConnection(Handler<AsyncResult<SQLConnection>> handler);
+
+    /**
+     * 关闭后端（共享连接池在最后一个使用者关闭时关闭）
+     *
+     * @param handler 完成后回调
+     */
+    void close(Handler<AsyncResult<Void>> handler);
+}
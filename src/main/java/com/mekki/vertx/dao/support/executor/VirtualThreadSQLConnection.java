@@ -0,0 +1,261 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Mekki on 2018/4/13.
+ * 在虚拟线程上执行 JDBC 调用的连接，同一连接上的语句按提交顺序串行执行，结果用 runOnContext 回到获取连接时的 context
+ * <p>
+ * 只用 JDBC 和 Vert.x 公开 API（语句执行和结果转换见 JdbcStatements），流式查询的读取也在本连接的语句队列上执行
+ */
+class VirtualThreadSQLConnection implements SQLConnection {
+
+    /**
+     * 流式查询未设置 fetch_size 时每批读取的行数
+     */
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 128;
+
+    private Context ctx;
+
+    private Connection conn;
+
+    private Executor executor;
+
+    /**
+     * 等待执行的 JDBC 调用，running 时由正在执行的线程依次取出
+     */
+    private final Deque<Runnable> statementsQueue = new ArrayDeque<>();
+
+    private boolean running;
+
+    private SQLOptions options = new SQLOptions();
+
+    VirtualThreadSQLConnection(Context ctx, Connection conn, Executor executor) {
+        this.ctx = ctx;
+        this.conn = conn;
+        this.executor = executor;
+    }
+
+    /**
+     * 在虚拟线程上执行，在原 context 上回调
+     *
+     * @param action  JDBC调用
+     * @param handler 结果
+     * @param <T>     结果类型
+     */
+    private <T> void run(JdbcCall<T> action, Handler<AsyncResult<T>> handler) {
+        enqueue(() -> {
+            Future<T> result;
+            try {
+                result = Future.succeededFuture(action.call());
+            } catch (Throwable e) {
+                result = Future.failedFuture(e);
+            }
+
+            if (handler != null) {
+                Future<T> r = result;
+                ctx.runOnContext(v -> handler.handle(r));
+            }
+        });
+    }
+
+    /**
+     * 提交到语句队列，没有正在执行的调用时在新的虚拟线程上开始执行
+     *
+     * @param task JDBC调用（自己处理异常）
+     */
+    private void enqueue(Runnable task) {
+        synchronized (statementsQueue) {
+            statementsQueue.addLast(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (statementsQueue) {
+                task = statementsQueue.pollFirst();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            task.run();
+        }
+    }
+
+    @Override
+    public SQLConnection setOptions(SQLOptions options) {
+        this.options = options;
+        return this;
+    }
+
+    @Override
+    public SQLConnection setAutoCommit(boolean autoCommit, Handler<AsyncResult<Void>> resultHandler) {
+        run(() -> {
+            conn.setAutoCommit(autoCommit);
+            return null;
+        }, resultHandler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection execute(String sql, Handler<AsyncResult<Void>> resultHandler) {
+        run(() -> JdbcStatements.execute(conn, options, sql), resultHandler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection query(String sql, Handler<AsyncResult<ResultSet>> resultHandler) {
+        return queryWithParams(sql, null, resultHandler);
+    }
+
+    @Override
+    public SQLConnection queryWithParams(String sql, JsonArray params, Handler<AsyncResult<ResultSet>> resultHandler) {
+        run(() -> JdbcStatements.query(conn, options, sql, params), resultHandler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection queryStream(String sql, Handler<AsyncResult<SQLRowStream>> handler) {
+        return queryStreamWithParams(sql, null, handler);
+    }
+
+    @Override
+    public SQLConnection queryStreamWithParams(String sql, JsonArray params, Handler<AsyncResult<SQLRowStream>> handler) {
+        run(() -> {
+            PreparedStatement statement = conn.prepareStatement(sql);
+            try {
+                JdbcStatements.applyOptions(statement, options);
+                JdbcStatements.fill(statement, params);
+                int fetchSize = options.getFetchSize() > 0 ? options.getFetchSize() : DEFAULT_STREAM_FETCH_SIZE;
+                return new VirtualThreadSQLRowStream(ctx, this::enqueue, statement, statement.executeQuery(), fetchSize);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
+        }, handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection update(String sql, Handler<AsyncResult<UpdateResult>> resultHandler) {
+        return updateWithParams(sql, null, resultHandler);
+    }
+
+    @Override
+    public SQLConnection updateWithParams(String sql, JsonArray params, Handler<AsyncResult<UpdateResult>> resultHandler) {
+        run(() -> JdbcStatements.update(conn, options, sql, params), resultHandler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection call(String sql, Handler<AsyncResult<ResultSet>> resultHandler) {
+        return callWithParams(sql, null, null, resultHandler);
+    }
+
+    @Override
+    public SQLConnection callWithParams(String sql, JsonArray params, JsonArray outputs, Handler<AsyncResult<ResultSet>> resultHandler) {
+        run(() -> JdbcStatements.call(conn, options, sql, params, outputs), resultHandler);
+        return this;
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        run(() -> {
+            conn.close();
+            return null;
+        }, handler);
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    @Override
+    public SQLConnection commit(Handler<AsyncResult<Void>> handler) {
+        run(() -> {
+            conn.commit();
+            return null;
+        }, handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection rollback(Handler<AsyncResult<Void>> handler) {
+        run(() -> {
+            conn.rollback();
+            return null;
+        }, handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batch(List<String> sqlStatements, Handler<AsyncResult<List<Integer>>> handler) {
+        run(() -> JdbcStatements.batch(conn, options, sqlStatements), handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchWithParams(String sqlStatement, List<JsonArray> args, Handler<AsyncResult<List<Integer>>> handler) {
+        run(() -> JdbcStatements.batch(conn, options, sqlStatement, args), handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection batchCallableWithParams(String sqlStatement, List<JsonArray> inArgs, List<JsonArray> outArgs,
+                                                 Handler<AsyncResult<List<Integer>>> handler) {
+        run(() -> JdbcStatements.batchCall(conn, options, sqlStatement, inArgs, outArgs), handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection setTransactionIsolation(TransactionIsolation isolation, Handler<AsyncResult<Void>> handler) {
+        run(() -> {
+            conn.setTransactionIsolation(isolation.getType());
+            return null;
+        }, handler);
+        return this;
+    }
+
+    @Override
+    public SQLConnection getTransactionIsolation(Handler<AsyncResult<TransactionIsolation>> handler) {
+        run(() -> TransactionIsolation.from(conn.getTransactionIsolation()), handler);
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <N> N unwrap() {
+        return (N) conn;
+    }
+
+    @FunctionalInterface
+    private interface JdbcCall<T> {
+        T call() throws SQLException;
+    }
+}
@@ -0,0 +1,235 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLRowStream;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 虚拟线程连接上的行流：设置 handler 后开始读取，每次在连接的语句队列上读取 fetchSize 行，回调在连接的 context 上执行，
+ * pause 时不再读取下一批
+ * <p>
+ * 只读取第一个结果集，moreResults 不支持
+ */
+class VirtualThreadSQLRowStream implements SQLRowStream {
+
+    private Context ctx;
+
+    /**
+     * 在连接的语句队列上执行 JDBC 调用
+     */
+    private Consumer<Runnable> statementsQueue;
+
+    private Statement statement;
+
+    private ResultSet rs;
+
+    private List<String> columns;
+
+    private int fetchSize;
+
+    private Deque<JsonArray> buffer = new ArrayDeque<>();
+
+    private Handler<JsonArray> handler;
+
+    private Handler<Void> endHandler;
+
+    private Handler<Void> resultSetClosedHandler;
+
+    private Handler<Throwable> exceptionHandler;
+
+    private boolean paused;
+
+    private boolean fetching;
+
+    private boolean delivering;
+
+    private boolean exhausted;
+
+    private boolean ended;
+
+    private boolean closed;
+
+    VirtualThreadSQLRowStream(Context ctx, Consumer<Runnable> statementsQueue, Statement statement, ResultSet rs,
+                              int fetchSize) throws SQLException {
+        this.ctx = ctx;
+        this.statementsQueue = statementsQueue;
+        this.statement = statement;
+        this.rs = rs;
+        this.fetchSize = fetchSize;
+        this.columns = JdbcStatements.columns(rs);
+    }
+
+    @Override
+    public int column(String name) {
+        return columns.indexOf(name);
+    }
+
+    @Override
+    public List<String> columns() {
+        return columns;
+    }
+
+    @Override
+    public SQLRowStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public SQLRowStream handler(Handler<JsonArray> handler) {
+        this.handler = handler;
+        if (handler != null) {
+            deliver();
+        }
+        return this;
+    }
+
+    @Override
+    public SQLRowStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public SQLRowStream resume() {
+        if (paused) {
+            paused = false;
+            deliver();
+        }
+        return this;
+    }
+
+    @Override
+    public SQLRowStream endHandler(Handler<Void> handler) {
+        this.endHandler = handler;
+        return this;
+    }
+
+    @Override
+    public SQLRowStream resultSetClosedHandler(Handler<Void> handler) {
+        this.resultSetClosedHandler = handler;
+        return this;
+    }
+
+    @Override
+    public void moreResults() {
+        throw new UnsupportedOperationException("virtual thread row stream reads a single result set");
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        if (closed) {
+            if (handler != null) {
+                handler.handle(Future.succeededFuture());
+            }
+            return;
+        }
+        closed = true;
+
+        statementsQueue.accept(() -> {
+            Future<Void> result = Future.succeededFuture();
+            try {
+                rs.close();
+                statement.close();
+            } catch (Throwable e) {
+                result = Future.failedFuture(e);
+            }
+
+            Future<Void> r = result;
+            ctx.runOnContext(v -> {
+                if (resultSetClosedHandler != null) {
+                    resultSetClosedHandler.handle(null);
+                }
+                if (handler != null) {
+                    handler.handle(r);
+                }
+            });
+        });
+    }
+
+    /**
+     * 在 context 上依次交付缓冲的行，缓冲为空时读取下一批或结束
+     */
+    private void deliver() {
+        if (delivering) {
+            return;
+        }
+        delivering = true;
+        try {
+            while (!paused && !closed && handler != null && !buffer.isEmpty()) {
+                handler.handle(buffer.pollFirst());
+            }
+        } finally {
+            delivering = false;
+        }
+
+        if (paused || closed || handler == null || !buffer.isEmpty()) {
+            return;
+        }
+
+        if (exhausted) {
+            if (!ended) {
+                ended = true;
+                if (endHandler != null) {
+                    endHandler.handle(null);
+                }
+            }
+        } else if (!fetching) {
+            fetch();
+        }
+    }
+
+    private void fetch() {
+        fetching = true;
+        statementsQueue.accept(() -> {
+            List<JsonArray> rows = new ArrayList<>(fetchSize);
+            Throwable failure = null;
+            boolean last = false;
+            try {
+                while (rows.size() < fetchSize) {
+                    if (!rs.next()) {
+                        last = true;
+                        break;
+                    }
+                    rows.add(JdbcStatements.row(rs, columns.size()));
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+
+            Throwable f = failure;
+            boolean l = last;
+            ctx.runOnContext(v -> {
+                fetching = false;
+                if (f != null) {
+                    if (exceptionHandler != null) {
+                        exceptionHandler.handle(f);
+                    }
+                    return;
+                }
+
+                buffer.addAll(rows);
+                exhausted = l;
+                deliver();
+            });
+        });
+    }
+}
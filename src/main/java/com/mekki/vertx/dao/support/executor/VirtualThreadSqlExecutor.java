@@ -0,0 +1,181 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.sql.SQLConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by Mekki on 2018/4/13.
+ * 虚拟线程执行后端：每个 JDBC 调用在一个虚拟线程上阻塞等待，不受 worker 线程池大小限制（并发受连接池大小限制）
+ * <p>
+ * 需要 JDK 21+，低版本 JDK 上退回 JDBC worker 线程池后端。数据源按 datasource_name 共享，
+ * 连接池实现取 provider_class（默认 C3P0）；取连接和关闭连接池在 worker 线程上执行，不会占住载体线程
+ */
+public class VirtualThreadSqlExecutor implements SqlExecutor {
+
+    private static Logger logger = LoggerFactory.getLogger(VirtualThreadSqlExecutor.class);
+
+    private static final String DEFAULT_PROVIDER = "io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider";
+
+    /**
+     * 虚拟线程执行器，不支持时为空
+     */
+    private static final Executor VIRTUAL_THREADS = createVirtualThreadExecutor();
+
+    /**
+     * 共享数据源，key 为数据源名称
+     */
+    private static final Map<String, DataSourceHolder> dataSources = new HashMap<>();
+
+    private Vertx vertx;
+
+    private String dataSourceName;
+
+    private DataSource dataSource;
+
+    private boolean closed;
+
+    private VirtualThreadSqlExecutor(Vertx vertx, JsonObject jdbcConfig) {
+        this.vertx = vertx;
+        this.dataSourceName = jdbcConfig.getString("datasource_name", "vertx-dao-virtual");
+        this.dataSource = acquireDataSource(dataSourceName, jdbcConfig);
+    }
+
+    /**
+     * 构造虚拟线程执行后端，当前 JDK 不支持虚拟线程时返回 JDBC 后端
+     *
+     * @param vertx      Vert.x对象
+     * @param jdbcConfig jdbc 配置
+     * @return
+     */
+    public static SqlExecutor of(Vertx vertx, JsonObject jdbcConfig) {
+        if (!isSupported()) {
+            logger.warn("virtual threads are not available on java {}, falling back to jdbc executor",
+                System.getProperty("java.version"));
+            return JdbcSqlExecutor.of(vertx, jdbcConfig);
+        }
+        return new VirtualThreadSqlExecutor(vertx, jdbcConfig);
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     *
+     * @return
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    private static Executor createVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static DataSource acquireDataSource(String name, JsonObject config) {
+        synchronized (dataSources) {
+            DataSourceHolder holder = dataSources.get(name);
+            if (holder == null) {
+                String providerClass = config.getString("provider_class", DEFAULT_PROVIDER);
+                try {
+                    DataSourceProvider provider = (DataSourceProvider) Class.forName(providerClass)
+                        .getDeclaredConstructor().newInstance();
+                    holder = new DataSourceHolder(provider, provider.getDataSource(config));
+                } catch (Exception e) {
+                    throw new RuntimeException("cannot create data source " + name + " with " + providerClass, e);
+                }
+                dataSources.put(name, holder);
+            }
+
+            holder.refCount++;
+            return holder.dataSource;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "virtual";
+    }
+
+    @Override
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    /**
+     * 在 worker 线程上从连接池取连接：C3P0 等连接池等待空闲连接时阻塞在 synchronized / wait()，
+     * JDK 24 以前会占住虚拟线程的载体线程，等待的取连接多于载体线程时，执行语句、归还连接的虚拟线程都无法调度
+     *
+     * @param handler SQL连接
+     */
+    @Override
+    public void getConnection(Handler<AsyncResult<SQLConnection>> handler) {
+        Context context = vertx.getOrCreateContext();
+
+        context.<Connection>executeBlocking(future -> {
+            try {
+                future.complete(dataSource.getConnection());
+            } catch (Throwable e) {
+                future.fail(e);
+            }
+        }, false, ar -> handler.handle(ar.map(conn -> new VirtualThreadSQLConnection(context, conn, VIRTUAL_THREADS))));
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        DataSourceHolder toClose = null;
+
+        synchronized (dataSources) {
+            if (!closed) {
+                closed = true;
+                DataSourceHolder holder = dataSources.get(dataSourceName);
+                if (holder != null && --holder.refCount == 0) {
+                    dataSources.remove(dataSourceName);
+                    toClose = holder;
+                }
+            }
+        }
+
+        if (toClose == null) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+
+        DataSourceHolder holder = toClose;
+        vertx.<Void>executeBlocking(future -> {
+            try {
+                holder.provider.close(holder.dataSource);
+                future.complete();
+            } catch (Throwable e) {
+                future.fail(e);
+            }
+        }, false, handler);
+    }
+
+    private static class DataSourceHolder {
+        private DataSourceProvider provider;
+        private DataSource dataSource;
+        private int refCount;
+
+        private DataSourceHolder(DataSourceProvider provider, DataSource dataSource) {
+            this.provider = provider;
+            this.dataSource = dataSource;
+        }
+    }
+}
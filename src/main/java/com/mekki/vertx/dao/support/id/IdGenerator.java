@@ -0,0 +1,24 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 客户端主键生成器，新增前为空的主键字段赋值
+ * <p>
+ * 生成的值为 Long 或 String，按字段类型经过转换器写入
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成主键值
+     *
+     * @param count   个数
+     * @param source  数据库序列（只有序列生成器使用）
+     * @param handler 主键值
+     */
+    void generate(int count, SequenceSource source, Handler<AsyncResult<List<Object>>> handler);
+}
@@ -0,0 +1,91 @@
+package com.mekki.vertx.dao.support.id;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.SequenceGenerator;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 主键生成器注册表，按字段解析一次
+ * <p>
+ * 内置："uuid7"、"ulid"、"snowflake"（节点号取系统属性 vertx.dao.worker_id，未配置时第一次使用报错，
+ * 也可以用 register 注册自己的节点号）；
+ * strategy = SEQUENCE 并标注 @SequenceGenerator 时使用池化序列。其他 @GeneratedValue 由数据库生成
+ */
+public class IdGenerators {
+
+    public static final String UUID7 = "uuid7";
+
+    public static final String ULID = "ulid";
+
+    public static final String SNOWFLAKE = "snowflake";
+
+    private static Map<String, IdGenerator> generators = new ConcurrentHashMap<>();
+
+    /**
+     * 池化序列生成器，key 为序列名
+     */
+    private static Map<String, IdGenerator> sequences = new ConcurrentHashMap<>();
+
+    static {
+        register(UUID7, new UuidV7Generator());
+        register(ULID, new UlidGenerator());
+    }
+
+    /**
+     * 注册生成器（在实体第一次使用前注册）
+     *
+     * @param name      名称，与 @GeneratedValue(generator = ...) 对应
+     * @param generator 生成器
+     */
+    public static void register(String name, IdGenerator generator) {
+        generators.put(name, generator);
+    }
+
+    /**
+     * 字段的客户端生成器
+     *
+     * @param field 字段
+     * @return 没有 @GeneratedValue 或由数据库生成时返回 null
+     */
+    public static IdGenerator resolve(Field field) {
+        GeneratedValue generatedValue = field.getAnnotation(GeneratedValue.class);
+        if (generatedValue == null) {
+            return null;
+        }
+
+        if (generatedValue.strategy() == GenerationType.SEQUENCE) {
+            SequenceGenerator sequence = field.getAnnotation(SequenceGenerator.class);
+            if (sequence == null) {
+                sequence = field.getDeclaringClass().getAnnotation(SequenceGenerator.class);
+            }
+            if (sequence != null) {
+                String name = sequence.sequenceName().length() > 0 ? sequence.sequenceName() : sequence.name();
+                int allocationSize = sequence.allocationSize();
+                return sequences.computeIfAbsent(name, key -> PooledSequenceGenerator.of(key, allocationSize));
+            }
+        }
+
+        if (SNOWFLAKE.equals(generatedValue.generator())) {
+            return generators.computeIfAbsent(SNOWFLAKE, name -> snowflake());
+        }
+        return generators.get(generatedValue.generator());
+    }
+
+    /**
+     * 按系统属性 vertx.dao.worker_id 构造雪花生成器，不提供默认节点号（多个进程都用 0 会生成重复主键）
+     *
+     * @return
+     */
+    private static IdGenerator snowflake() {
+        Integer workerId = Integer.getInteger("vertx.dao.worker_id");
+        if (workerId == null) {
+            throw new IllegalStateException("snowflake id generator requires -Dvertx.dao.worker_id (0-1023) "
+                + "or IdGenerators.register(\"" + SNOWFLAKE + "\", SnowflakeIdGenerator.of(workerId))");
+        }
+        return SnowflakeIdGenerator.of(workerId);
+    }
+}
@@ -0,0 +1,133 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 池化序列（hi/lo）Long 主键：每次从数据库序列取一个值 v，预留 [v, v + allocationSize)，用完再取
+ * <p>
+ * 序列需要以 INCREMENT BY allocationSize 创建，与其他直接使用序列的写入方不冲突；并发请求共用一次取值
+ */
+public class PooledSequenceGenerator implements IdGenerator {
+
+    private String sequence;
+
+    private int allocationSize;
+
+    /**
+     * 当前预留范围 [next, limit)
+     */
+    private long next;
+
+    private long limit;
+
+    /**
+     * 等待序列值的请求
+     */
+    private Deque<Request> waiting = new ArrayDeque<>();
+
+    private boolean fetching;
+
+    private PooledSequenceGenerator(String sequence, int allocationSize) {
+        this.sequence = sequence;
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * 构造生成器
+     *
+     * @param sequence       序列名
+     * @param allocationSize 每次预留的个数（序列的步长）
+     * @return
+     */
+    public static PooledSequenceGenerator of(String sequence, int allocationSize) {
+        return new PooledSequenceGenerator(sequence, Math.max(1, allocationSize));
+    }
+
+    @Override
+    public void generate(int count, SequenceSource source, Handler<AsyncResult<List<Object>>> handler) {
+        synchronized (this) {
+            waiting.add(new Request(count, handler));
+        }
+        drain(source);
+    }
+
+    /**
+     * 按顺序为等待的请求分配主键，预留范围用完时取一次序列（同一时间只有一次）
+     *
+     * @param source 数据库序列
+     */
+    private void drain(SequenceSource source) {
+        List<Request> completed = new ArrayList<>();
+        boolean fetch = false;
+
+        synchronized (this) {
+            while (!waiting.isEmpty()) {
+                Request request = waiting.peek();
+                while (request.ids.size() < request.count && next < limit) {
+                    request.ids.add(next++);
+                }
+                if (request.ids.size() < request.count) {
+                    break;
+                }
+                completed.add(waiting.poll());
+            }
+
+            if (!waiting.isEmpty() && !fetching) {
+                fetching = true;
+                fetch = true;
+            }
+        }
+
+        completed.forEach(request -> request.handler.handle(Future.succeededFuture(request.ids)));
+        if (fetch) {
+            source.nextValue(sequence, ar -> onFetched(ar, source));
+        }
+    }
+
+    private void onFetched(AsyncResult<Long> ar, SequenceSource source) {
+        List<Request> failed = new ArrayList<>();
+        synchronized (this) {
+            fetching = false;
+            if (ar.succeeded()) {
+                next = ar.result();
+                limit = next + allocationSize;
+            } else {
+                failed.addAll(waiting);
+                waiting.clear();
+            }
+        }
+
+        if (ar.failed()) {
+            failed.forEach(request -> request.handler.handle(Future.failedFuture(ar.cause())));
+            return;
+        }
+        drain(source);
+    }
+
+    public String getSequence() {
+        return sequence;
+    }
+
+    private static class Request {
+
+        private int count;
+
+        private List<Object> ids;
+
+        private Handler<AsyncResult<List<Object>>> handler;
+
+        private Request(int count, Handler<AsyncResult<List<Object>>> handler) {
+            this.count = count;
+            this.ids = new ArrayList<>(count);
+            this.handler = handler;
+        }
+    }
+}
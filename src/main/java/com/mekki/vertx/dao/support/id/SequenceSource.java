@@ -0,0 +1,20 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 数据库序列
+ */
+@FunctionalInterface
+public interface SequenceSource {
+
+    /**
+     * 取序列的下一个值
+     *
+     * @param sequence 序列名
+     * @param handler  下一个值
+     */
+    void nextValue(String sequence, Handler<AsyncResult<Long>> handler);
+}
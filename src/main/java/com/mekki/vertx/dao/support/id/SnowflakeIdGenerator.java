@@ -0,0 +1,75 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 雪花算法 Long 主键：41 位毫秒时间戳（从 2018-01-01 起）+ 10 位节点号 + 12 位毫秒内序号，按时间递增
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    private static final long EPOCH = 1514764800000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private long workerId;
+
+    private long lastTimestamp = -1;
+
+    private long sequence;
+
+    private SnowflakeIdGenerator(long workerId) {
+        this.workerId = workerId;
+    }
+
+    /**
+     * 构造生成器
+     *
+     * @param workerId 节点号 0 ~ 1023，同时写入的进程必须不同
+     * @return
+     */
+    public static SnowflakeIdGenerator of(int workerId) {
+        if (workerId < 0 || workerId >= 1 << WORKER_BITS) {
+            throw new IllegalArgumentException("snowflake worker id " + workerId + " out of range");
+        }
+        return new SnowflakeIdGenerator(workerId);
+    }
+
+    @Override
+    public void generate(int count, SequenceSource source, Handler<AsyncResult<List<Object>>> handler) {
+        List<Object> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(next());
+        }
+        handler.handle(Future.succeededFuture(ids));
+    }
+
+    /**
+     * 下一个主键，时钟回拨或毫秒内序号用完时沿用上一个时间戳继续递增
+     *
+     * @return
+     */
+    public synchronized long next() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                timestamp++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+
+        return ((timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+}
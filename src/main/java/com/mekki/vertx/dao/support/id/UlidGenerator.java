@@ -0,0 +1,79 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * ULID 字符串主键：48 位毫秒时间戳 + 80 位随机数，26 位 Crockford Base32，同一毫秒内单调递增
+ */
+public class UlidGenerator implements IdGenerator {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private SecureRandom random = new SecureRandom();
+
+    private long lastTimestamp = -1;
+
+    /**
+     * 随机数高 16 位
+     */
+    private long randomHigh;
+
+    /**
+     * 随机数低 64 位
+     */
+    private long randomLow;
+
+    @Override
+    public void generate(int count, SequenceSource source, Handler<AsyncResult<List<Object>>> handler) {
+        List<Object> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(next());
+        }
+        handler.handle(Future.succeededFuture(ids));
+    }
+
+    /**
+     * 下一个主键
+     *
+     * @return
+     */
+    public synchronized String next() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            randomLow++;
+            if (randomLow == 0) {
+                randomHigh = (randomHigh + 1) & 0xFFFF;
+                if (randomHigh == 0) {
+                    timestamp++;
+                }
+            }
+        } else {
+            randomHigh = random.nextInt(1 << 16);
+            randomLow = random.nextLong();
+        }
+        lastTimestamp = timestamp;
+
+        char[] chars = new char[26];
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (timestamp & 31)];
+            timestamp >>>= 5;
+        }
+
+        // 80 位随机数 = 16 位高位 + 64 位低位，每 5 位一个字符
+        long low = randomLow;
+        long high = randomHigh;
+        for (int i = 25; i >= 10; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | ((high & 31) << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,62 @@
+package com.mekki.vertx.dao.support.id;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 时间有序的 UUID（版本 7）字符串主键：48 位毫秒时间戳 + 12 位毫秒内计数 + 62 位随机数
+ * <p>
+ * 字段类型为 UUID 时经过 UUID 转换器写入
+ */
+public class UuidV7Generator implements IdGenerator {
+
+    private SecureRandom random = new SecureRandom();
+
+    private long lastTimestamp = -1;
+
+    private int counter;
+
+    @Override
+    public void generate(int count, SequenceSource source, Handler<AsyncResult<List<Object>>> handler) {
+        List<Object> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(next().toString());
+        }
+        handler.handle(Future.succeededFuture(ids));
+    }
+
+    /**
+     * 下一个主键
+     *
+     * @return
+     */
+    public UUID next() {
+        long timestamp;
+        int sequence;
+        synchronized (this) {
+            timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+            if (timestamp == lastTimestamp) {
+                counter = (counter + 1) & 0xFFF;
+                if (counter == 0) {
+                    timestamp++;
+                }
+            } else {
+                // 计数从较小的随机值开始，同一毫秒内仍有足够的递增空间
+                counter = random.nextInt(1 << 10);
+            }
+            lastTimestamp = timestamp;
+            sequence = counter;
+        }
+
+        long mostSigBits = (timestamp << 16) | 0x7000L | sequence;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,201 @@
+package com.mekki.vertx.dao.impl;
+
+import com.mekki.vertx.dao.support.DataFormat;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.persistence.OptimisticLockException;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 在 MySQL 模式的 H2 上依次执行 DefaultDaoImpl 和 TransactionalDaoImpl 的全部操作并检查结果
+ */
+@RunWith(VertxUnitRunner.class)
+public class DaoIntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Vertx vertx;
+
+    private H2Database database;
+
+    private JsonObject config;
+
+    private DefaultDaoImpl dao;
+
+    private LatencyRecorder recorder = new LatencyRecorder();
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        database = H2Database.of("integration");
+        config = database.config(4).put("write_behind", Workload.writeBehind());
+
+        DefaultDaoImpl.create(vertx, config, context.asyncAssertSuccess(created -> dao = created));
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        vertx.close(context.asyncAssertSuccess());
+        database.drop();
+    }
+
+    @Test(timeout = 60000)
+    public void everyOperation(TestContext context) {
+        int activeBefore = TransactionalDaoImpl.metrics().getInteger("active");
+        Workload workload = new Workload(vertx, config, dao, recorder, folder.getRoot());
+
+        Async async = context.async();
+        workload.round("it").setHandler(context.asyncAssertSuccess(v -> {
+            context.assertEquals(0, recorder.getFailures());
+            context.assertEquals(activeBefore, TransactionalDaoImpl.metrics().getInteger("active"));
+            async.complete();
+        }));
+    }
+
+    /**
+     * 版本值为空的实体不能更新或删除，行不受影响
+     */
+    @Test(timeout = 60000)
+    public void nullVersionIsAConflict(TestContext context) {
+        Item item = Item.of("nullver", 1);
+
+        Async async = context.async();
+        dao.insert(item, context.asyncAssertSuccess(n -> {
+            Item detached = Item.of("nullver", 2);
+            detached.setId(item.getId());
+
+            dao.update(detached, context.asyncAssertFailure(updateEx -> {
+                context.assertTrue(updateEx instanceof OptimisticLockException, updateEx.toString());
+                dao.delete(detached, context.asyncAssertFailure(deleteEx -> {
+                    context.assertTrue(deleteEx instanceof OptimisticLockException, deleteEx.toString());
+                    dao.selectOne(item, context.asyncAssertSuccess(found -> {
+                        context.assertEquals(1, found.getAmount());
+                        context.assertEquals(0, found.getVersion());
+                        async.complete();
+                    }));
+                }));
+            }));
+        }));
+    }
+
+    /**
+     * upsert 不能检查版本，带 @Version 的实体直接失败，行不受影响
+     */
+    @Test(timeout = 60000)
+    public void upsertRejectsVersionedEntity(TestContext context) {
+        Item item = Item.of("upsert", 1);
+
+        Async async = context.async();
+        dao.insert(item, context.asyncAssertSuccess(n -> {
+            Item stale = Item.of("upsert", 2);
+            stale.setId(item.getId());
+            stale.setVersion(0);
+
+            dao.upsert(stale, context.asyncAssertFailure(ex -> {
+                context.assertTrue(ex instanceof UnsupportedOperationException, ex.toString());
+                dao.selectOne(item, context.asyncAssertSuccess(found -> {
+                    context.assertEquals(1, found.getAmount());
+                    context.assertEquals(0, found.getVersion());
+                    async.complete();
+                }));
+            }));
+        }));
+    }
+
+    /**
+     * 开启 dirty_tracking 时，原地修改的 JSON 字段也会被更新
+     */
+    @Test(timeout = 60000)
+    public void dirtyTrackingSeesInPlaceJsonChanges(TestContext context) {
+        Async async = context.async();
+        DefaultDaoImpl.create(vertx, config.copy().put("dirty_tracking", true), context.asyncAssertSuccess(tracking -> {
+            Document document = Document.of(new JsonObject().put("status", "new"));
+            tracking.insert(document, context.asyncAssertSuccess(n -> {
+                Document byId = new Document();
+                byId.setId(document.getId());
+
+                tracking.selectOne(byId, context.asyncAssertSuccess(loaded -> {
+                    loaded.getData().put("status", "done");
+                    tracking.update(loaded, context.asyncAssertSuccess(updated -> {
+                        context.assertEquals(1, updated);
+                        tracking.selectOne(byId, context.asyncAssertSuccess(reloaded -> {
+                            context.assertEquals("done", reloaded.getData().getString("status"));
+                            async.complete();
+                        }));
+                    }));
+                }));
+            }));
+        }));
+    }
+
+    /**
+     * 结尾没有换行的最后一行也会导入
+     */
+    @Test(timeout = 60000)
+    public void importKeepsLastLineWithoutNewline(TestContext context) throws Exception {
+        String path = folder.newFile("tail.ndjson").getAbsolutePath();
+        vertx.fileSystem().writeFileBlocking(path, Buffer.buffer("{\"name\":\"tail\",\"amount\":1}\n"
+            + "{\"name\":\"tail\",\"amount\":2}"));
+        AsyncFile file = vertx.fileSystem().openBlocking(path, new OpenOptions().setRead(true));
+
+        Async async = context.async();
+        dao.importFrom(Item.class, file, DataFormat.NDJSON, 10, context.asyncAssertSuccess(imported -> {
+            context.assertEquals(2L, imported);
+            dao.selectCount(Item.of("tail", 2), context.asyncAssertSuccess(count -> {
+                context.assertEquals(1L, count);
+                async.complete();
+            }));
+        }));
+    }
+
+    /**
+     * 慢查询的执行计划占用准入许可，完成后归还
+     */
+    @Test(timeout = 60000)
+    public void explainRunsUnderAdmission(TestContext context) {
+        JsonObject slow = config.copy()
+            .put("slow_query", new JsonObject().put("threshold", 0).put("explain", true).put("address", "it.slow_query"))
+            .put("admission", new JsonObject().put("max_concurrency", 2));
+
+        Async async = context.async();
+        DefaultDaoImpl.create(vertx, slow, context.asyncAssertSuccess(explaining ->
+            explaining.selectCount(Item.of("explain", null), context.asyncAssertSuccess(count ->
+                vertx.setPeriodic(20, id -> vertx.eventBus().<JsonArray>send("it.slow_query", new JsonObject(),
+                    context.asyncAssertSuccess(reply -> {
+                        JsonObject entry = reply.body().getJsonObject(0);
+                        if (!entry.containsKey("plan") && !entry.containsKey("plan_error")) {
+                            return;
+                        }
+                        vertx.cancelTimer(id);
+
+                        context.assertTrue(entry.containsKey("plan"), entry.encode());
+                        context.assertEquals(0, explaining.admissionStatus().getJsonObject("dao").getInteger("in_flight"));
+                        async.complete();
+                    })))))));
+    }
+
+    @Test(timeout = 60000)
+    public void scanFailsWhenChunkHandlerReturnsNull(TestContext context) {
+        Async async = context.async();
+        dao.insert(Item.of("scan", 1), context.asyncAssertSuccess(n -> dao.scan(Item.of("scan", null), 2, 10,
+            chunk -> null, context.asyncAssertFailure(ex -> {
+                context.assertTrue(ex instanceof IllegalStateException, ex.toString());
+                async.complete();
+            }))));
+    }
+}
@@ -0,0 +1,274 @@
+package com.mekki.vertx.dao.impl;
+
+import com.mekki.vertx.dao.support.exception.RejectedException;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 负载测试：多个 verticle 在各自的 event loop 上并发执行 Workload，输出每个操作的 p50 / p99 和吞吐量；
+ * 以及连接池耗尽、准入队列满时的行为
+ */
+@RunWith(VertxUnitRunner.class)
+public class DaoLoadTest {
+
+    private static final int POOL_SIZE = 4;
+
+    private static final int VERTICLES = 8;
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * p99 上限（毫秒），只用于发现明显的排队或死锁，不是性能基线
+     */
+    private static final double P99_LIMIT = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Vertx vertx;
+
+    private H2Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        database = H2Database.of("load");
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        vertx.close(context.asyncAssertSuccess());
+        database.drop();
+    }
+
+    @Test(timeout = 120000)
+    public void concurrentVerticles(TestContext context) {
+        JsonObject config = database.config(POOL_SIZE).put("write_behind", Workload.writeBehind());
+        LatencyRecorder recorder = new LatencyRecorder();
+        int activeBefore = TransactionalDaoImpl.metrics().getInteger("active");
+        AtomicInteger index = new AtomicInteger();
+
+        Async async = context.async();
+        vertx.deployVerticle(() -> new LoadVerticle(config, recorder, folder.getRoot(), index.getAndIncrement()),
+            new DeploymentOptions().setInstances(VERTICLES), context.asyncAssertSuccess(id -> {
+                System.out.println(recorder.report());
+
+                context.assertEquals(0, recorder.getFailures());
+                context.assertEquals(VERTICLES * ROUNDS, recorder.count("inTransaction"));
+                context.assertEquals(VERTICLES * ROUNDS, recorder.count("upsert"));
+                context.assertTrue(recorder.percentile(null, 0.99) < P99_LIMIT,
+                    "p99 " + recorder.percentile(null, 0.99) + " ms exceeds " + P99_LIMIT + " ms");
+                context.assertTrue(recorder.throughput() > 0);
+                context.assertEquals(activeBefore, TransactionalDaoImpl.metrics().getInteger("active"));
+
+                DefaultDaoImpl.create(vertx, config, context.asyncAssertSuccess(dao -> acquireAll(context, dao, async)));
+            }));
+    }
+
+    /**
+     * 连接池耗尽时语句排队等待连接，事务释放连接后继续执行
+     */
+    @Test(timeout = 60000)
+    public void poolExhaustionQueuesStatements(TestContext context) {
+        JsonObject config = database.config(2);
+        List<Future> transactions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Future<TransactionalDaoImpl> tx = Future.future();
+            TransactionalDaoImpl.createTransactional(vertx, config, tx);
+            transactions.add(tx);
+        }
+
+        Async async = context.async();
+        CompositeFuture.all(transactions).setHandler(context.asyncAssertSuccess(held -> DefaultDaoImpl.create(vertx, config,
+            context.asyncAssertSuccess(dao -> {
+                long started = System.nanoTime();
+                boolean[] released = {false};
+
+                dao.selectCount(new Item(), context.asyncAssertSuccess(count -> {
+                    context.assertTrue(released[0], "statement runs only after a connection is released");
+                    System.out.printf("pool exhausted, statement waited %.1f ms%n", (System.nanoTime() - started) / 1_000_000.0);
+                    async.complete();
+                }));
+
+                vertx.setTimer(500, t -> {
+                    released[0] = true;
+                    held.<TransactionalDaoImpl>resultAt(0).rollbackAndClose(context.asyncAssertSuccess());
+                    held.<TransactionalDaoImpl>resultAt(1).rollbackAndClose(context.asyncAssertSuccess());
+                });
+            }))));
+    }
+
+    /**
+     * 准入队列满时快速失败（RejectedException），不占用连接，已接受的操作全部完成
+     */
+    @Test(timeout = 60000)
+    public void admissionRejectsWhenQueueIsFull(TestContext context) {
+        JsonObject config = database.config(POOL_SIZE)
+            .put("admission", new JsonObject().put("max_concurrency", 2).put("max_queue", 2));
+        int requests = 20;
+
+        Async async = context.async();
+        DefaultDaoImpl.create(vertx, config, context.asyncAssertSuccess(dao -> {
+            int[] succeeded = {0};
+            int[] rejected = {0};
+            List<Future> completions = new ArrayList<>();
+
+            for (int i = 0; i < requests; i++) {
+                Future<Void> completion = Future.future();
+                completions.add(completion);
+                dao.select(new Item(), ar -> {
+                    if (ar.succeeded()) {
+                        succeeded[0]++;
+                    } else {
+                        context.assertTrue(ar.cause() instanceof RejectedException, String.valueOf(ar.cause()));
+                        rejected[0]++;
+                    }
+                    completion.complete();
+                });
+            }
+
+            CompositeFuture.all(completions).setHandler(context.asyncAssertSuccess(all -> {
+                System.out.printf("admission: %d succeeded, %d rejected%n", succeeded[0], rejected[0]);
+                context.assertEquals(requests, succeeded[0] + rejected[0]);
+                context.assertTrue(succeeded[0] >= 4, "in-flight and queued statements complete");
+                context.assertTrue(rejected[0] > 0, "statements beyond the queue are rejected");
+                context.assertEquals(0, dao.admissionStatus().getJsonObject("dao").getInteger("in_flight"));
+                acquireAll(context, dao, async);
+            }));
+        }));
+    }
+
+    /**
+     * 事务占满连接池、普通语句占满许可并等待连接时，事务内的语句不再申请许可，事务可以提交并归还连接
+     */
+    @Test(timeout = 60000)
+    public void transactionsProgressWhenPermitsWaitForConnections(TestContext context) throws Exception {
+        H2Database admission = H2Database.of("admission");
+        JsonObject config = admission.config(2)
+            .put("admission", new JsonObject().put("max_concurrency", 2).put("max_queue", 16));
+
+        List<Future> transactions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Future<TransactionalDaoImpl> tx = Future.future();
+            TransactionalDaoImpl.createTransactional(vertx, config, tx);
+            transactions.add(tx);
+        }
+
+        Async async = context.async();
+        CompositeFuture.all(transactions).setHandler(context.asyncAssertSuccess(held -> DefaultDaoImpl.create(vertx,
+            config, context.asyncAssertSuccess(dao -> {
+                List<Future> queries = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    Future<Long> count = Future.future();
+                    dao.selectCount(new Item(), count);
+                    queries.add(count);
+                }
+
+                // 普通语句已经拿到全部许可并等待连接
+                vertx.setTimer(200, t -> {
+                    context.assertEquals(2, dao.admissionStatus().getJsonObject("dao").getInteger("in_flight"));
+
+                    List<Future> commits = new ArrayList<>();
+                    for (int i = 0; i < 2; i++) {
+                        TransactionalDaoImpl tx = held.resultAt(i);
+                        Future<Void> committed = Future.future();
+                        tx.insert(Item.of("tx" + i, i), context.asyncAssertSuccess(n -> tx.commitAndClose(committed)));
+                        commits.add(committed);
+                    }
+
+                    commits.addAll(queries);
+                    CompositeFuture.all(commits).setHandler(context.asyncAssertSuccess(all -> {
+                        context.assertEquals(0, dao.admissionStatus().getJsonObject("dao").getInteger("in_flight"));
+                        vertx.executeBlocking(f -> {
+                            try {
+                                admission.drop();
+                                f.complete();
+                            } catch (Exception e) {
+                                f.fail(e);
+                            }
+                        }, context.asyncAssertSuccess(v -> async.complete()));
+                    }));
+                });
+            }))));
+    }
+
+    /**
+     * 同时持有 POOL_SIZE 个连接，有泄漏时最后的连接拿不到
+     */
+    private void acquireAll(TestContext context, DefaultDaoImpl dao, Async async) {
+        List<Future> connections = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Future<SQLConnection> connection = Future.future();
+            dao.getSqlExecutor().getConnection(connection);
+            connections.add(connection);
+        }
+
+        long timer = vertx.setTimer(5000, t -> context.fail("pool cannot hand out " + POOL_SIZE + " connections"));
+        CompositeFuture.all(connections).setHandler(context.asyncAssertSuccess(all -> {
+            vertx.cancelTimer(timer);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                all.<SQLConnection>resultAt(i).close();
+            }
+            async.complete();
+        }));
+    }
+
+    /**
+     * 在自己的 event loop 上创建 DAO，依次执行 ROUNDS 轮，全部完成后部署成功
+     */
+    private static class LoadVerticle extends AbstractVerticle {
+
+        private JsonObject config;
+
+        private LatencyRecorder recorder;
+
+        private File directory;
+
+        private int index;
+
+        LoadVerticle(JsonObject config, LatencyRecorder recorder, File directory, int index) {
+            this.config = config;
+            this.recorder = recorder;
+            this.directory = directory;
+            this.index = index;
+        }
+
+        @Override
+        public void start(Future<Void> startFuture) {
+            DefaultDaoImpl.create(vertx, config, created -> {
+                if (created.failed()) {
+                    startFuture.fail(created.cause());
+                    return;
+                }
+
+                Workload workload = new Workload(vertx, config, created.result(), recorder, directory);
+                Future<Void> rounds = Future.succeededFuture();
+                for (int i = 0; i < ROUNDS; i++) {
+                    String tag = "v" + index + "r" + i;
+                    rounds = rounds.compose(v -> workload.round(tag));
+                }
+                rounds.setHandler(startFuture);
+            });
+        }
+    }
+}
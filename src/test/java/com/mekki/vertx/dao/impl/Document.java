@@ -0,0 +1,47 @@
+package com.mekki.vertx.dao.impl;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 带 JSON 字段的测试实体（JsonObject 以文本保存）
+ */
+@Table(name = "document")
+public class Document {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    private JsonObject data;
+
+    public Document() {
+    }
+
+    public static Document of(JsonObject data) {
+        Document document = new Document();
+        document.data = data;
+        return document;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public JsonObject getData() {
+        return data;
+    }
+
+    public void setData(JsonObject data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,171 @@
+package com.mekki.vertx.dao.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 并发注入失败（SQL错误、结果不符、版本冲突、事务回滚、回调抛出异常），
+ * 检查每个回调都被调用，且失败后连接池仍能交出全部连接
+ */
+@RunWith(VertxUnitRunner.class)
+public class FailureInjectionTest {
+
+    private static final int POOL_SIZE = 4;
+
+    private static final int ROUNDS = 25;
+
+    private Vertx vertx;
+
+    private H2Database database;
+
+    private JsonObject config;
+
+    private DefaultDaoImpl dao;
+
+    @Before
+    public void setUp(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        database = H2Database.of("failure_injection");
+        config = database.config(POOL_SIZE);
+
+        Async async = context.async();
+        DefaultDaoImpl.create(vertx, config, context.asyncAssertSuccess(created -> {
+            dao = created;
+            dao.insert(Item.of("dup", 1), context.asyncAssertSuccess(
+                first -> dao.insert(Item.of("dup", 2), context.asyncAssertSuccess(second -> async.complete()))));
+        }));
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        vertx.close(context.asyncAssertSuccess());
+        database.drop();
+    }
+
+    @Test(timeout = 60000)
+    public void failedOperationsReleaseConnections(TestContext context) {
+        int activeBefore = TransactionalDaoImpl.metrics().getInteger("active");
+        List<Future> completions = new ArrayList<>();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            // SQL 错误：name 超长
+            dao.insert(Item.of("too long name", 1), expectFailure(context, completions));
+            // 结果不符：两行匹配
+            dao.selectOne(Item.of("dup", null), expectFailure(context, completions));
+            // 不经过连接的失败：无条件删除
+            dao.deleteWhere(new Item(), expectFailure(context, completions));
+            // 版本冲突
+            Handler<AsyncResult<Integer>> conflict = expectFailure(context, completions);
+            Item stale = Item.of("stale", 1);
+            dao.insert(stale, inserted -> {
+                if (inserted.failed()) {
+                    conflict.handle(inserted);
+                    return;
+                }
+                stale.setVersion(stale.getVersion() + 100);
+                dao.update(stale, updated -> {
+                    context.assertTrue(updated.failed() && updated.cause() instanceof OptimisticLockException);
+                    conflict.handle(updated);
+                });
+            });
+
+            // block 返回失败
+            TransactionalDaoImpl.inTransaction(vertx, config,
+                tx -> insert(tx, Item.of("rolled", 1))
+                    .compose(n -> Future.<Integer>failedFuture(new IllegalStateException("injected"))),
+                expectFailure(context, completions));
+            // block 中的回调抛出异常
+            TransactionalDaoImpl.inTransaction(vertx, config, tx -> {
+                Future<Integer> future = Future.future();
+                tx.insert(Item.of("thrown", 1), ar -> {
+                    throw new IllegalStateException("injected");
+                });
+                return future;
+            }, expectFailure(context, completions));
+            // block 直接抛出异常
+            TransactionalDaoImpl.<Integer>inTransaction(vertx, config, tx -> {
+                throw new IllegalStateException("injected");
+            }, expectFailure(context, completions));
+            // 事务中的 SQL 错误
+            TransactionalDaoImpl.inTransaction(vertx, config, tx -> insert(tx, Item.of("too long name", 1)),
+                expectFailure(context, completions));
+            // 手动回滚
+            Handler<AsyncResult<Integer>> rolledBack = expectFailure(context, completions);
+            TransactionalDaoImpl.createTransactional(vertx, config, created -> {
+                if (created.failed()) {
+                    rolledBack.handle(Future.failedFuture(created.cause()));
+                    return;
+                }
+                TransactionalDaoImpl tx = created.result();
+                tx.insert(Item.of("too long name", 1), inserted -> tx.rollbackAndClose(closed -> {
+                    context.assertTrue(closed.succeeded(), "rollbackAndClose succeeds");
+                    rolledBack.handle(inserted);
+                }));
+            });
+        }
+
+        Async async = context.async();
+        CompositeFuture.join(completions).setHandler(all -> {
+            context.assertTrue(all.succeeded(), "every handler completes with the expected failure");
+            context.assertEquals(activeBefore, TransactionalDaoImpl.metrics().getInteger("active"));
+            acquireAll(context, async);
+        });
+    }
+
+    /**
+     * 同时持有 POOL_SIZE 个连接，有泄漏时最后的连接拿不到
+     */
+    private void acquireAll(TestContext context, Async async) {
+        List<Future> connections = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Future<SQLConnection> connection = Future.future();
+            dao.getSqlExecutor().getConnection(connection);
+            connections.add(connection);
+        }
+
+        long timer = vertx.setTimer(5000, t -> context.fail("pool cannot hand out " + POOL_SIZE + " connections"));
+        CompositeFuture.all(connections).setHandler(context.asyncAssertSuccess(all -> {
+            vertx.cancelTimer(timer);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                all.<SQLConnection>resultAt(i).close();
+            }
+            async.complete();
+        }));
+    }
+
+    private static Future<Integer> insert(TransactionalDaoImpl tx, Item item) {
+        Future<Integer> future = Future.future();
+        tx.insert(item, future);
+        return future;
+    }
+
+    /**
+     * 期望失败的回调，必须恰好调用一次
+     */
+    private static <T> Handler<AsyncResult<T>> expectFailure(TestContext context, List<Future> completions) {
+        Future<Void> completion = Future.future();
+        completions.add(completion);
+        return ar -> {
+            context.assertTrue(ar.failed(), "operation is expected to fail");
+            context.assertFalse(completion.isComplete(), "handler is called more than once");
+            completion.complete();
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.mekki.vertx.dao.impl;
+
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * MySQL 模式的内存 H2 数据库，每个测试使用独立的库和数据源
+ */
+public class H2Database {
+
+    private String url;
+
+    private Connection keepAlive;
+
+    private H2Database(String url, Connection keepAlive) {
+        this.url = url;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * 建库并建表
+     *
+     * @param name 库名，同时作为数据源名称
+     * @return
+     * @throws SQLException
+     */
+    public static H2Database of(String name) throws SQLException {
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_UPPER=FALSE;DB_CLOSE_DELAY=-1";
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table \"item\" (\"id\" int auto_increment primary key, "
+                + "\"name\" varchar(8), \"amount\" int, \"version\" int)");
+            statement.execute("create table \"document\" (\"id\" int auto_increment primary key, \"data\" clob)");
+        }
+        return new H2Database(url, connection);
+    }
+
+    /**
+     * jdbc 配置
+     *
+     * @param poolSize 连接池大小
+     * @return
+     */
+    public JsonObject config(int poolSize) {
+        return new JsonObject()
+            .put("url", url)
+            .put("driver_class", "org.h2.Driver")
+            .put("datasource_name", url)
+            .put("pool", new JsonObject().put("max_size", poolSize));
+    }
+
+    public void drop() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("drop all objects delete files");
+        } finally {
+            keepAlive.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mekki.vertx.dao.impl;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 测试实体，name 最长 8 个字符（超长时插入失败）
+ */
+@Table(name = "item")
+public class Item {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    private String name;
+
+    private Integer amount;
+
+    @Version
+    private Integer version;
+
+    public Item() {
+    }
+
+    public static Item of(String name, Integer amount) {
+        Item item = new Item();
+        item.name = name;
+        item.amount = amount;
+        return item;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mekki.vertx.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 按操作记录耗时，计算 p50 / p99 和吞吐量（多个 verticle 共用，方法加锁）
+ */
+public class LatencyRecorder {
+
+    private Map<String, List<Long>> samples = new TreeMap<>();
+
+    private int failures;
+
+    private long started = System.nanoTime();
+
+    public synchronized void record(String operation, long nanos, boolean succeeded) {
+        samples.computeIfAbsent(operation, op -> new ArrayList<>()).add(nanos);
+        if (!succeeded) {
+            failures++;
+        }
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    public synchronized int count() {
+        return samples.values().stream().mapToInt(List::size).sum();
+    }
+
+    public synchronized int count(String operation) {
+        return samples.getOrDefault(operation, Collections.emptyList()).size();
+    }
+
+    /**
+     * 百分位耗时（毫秒）
+     *
+     * @param operation  操作，为空时统计全部操作
+     * @param percentile 百分位，例如 0.99
+     * @return
+     */
+    public synchronized double percentile(String operation, double percentile) {
+        List<Long> sorted = new ArrayList<>();
+        if (operation == null) {
+            samples.values().forEach(sorted::addAll);
+        } else {
+            sorted.addAll(samples.getOrDefault(operation, Collections.emptyList()));
+        }
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    /**
+     * 每秒完成的操作数
+     *
+     * @return
+     */
+    public synchronized double throughput() {
+        double seconds = (System.nanoTime() - started) / (double) TimeUnit.SECONDS.toNanos(1);
+        return count() / Math.max(seconds, 0.001);
+    }
+
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder(String.format("%-20s %8s %10s %10s%n", "operation", "count", "p50(ms)", "p99(ms)"));
+        samples.keySet().forEach(op -> report.append(String.format("%-20s %8d %10.2f %10.2f%n",
+            op, count(op), percentile(op, 0.5), percentile(op, 0.99))));
+        report.append(String.format("%-20s %8d %10.2f %10.2f%n", "total", count(), percentile(null, 0.5), percentile(null, 0.99)));
+        report.append(String.format("throughput %.1f ops/s, failures %d", throughput(), failures));
+        return report.toString();
+    }
+}
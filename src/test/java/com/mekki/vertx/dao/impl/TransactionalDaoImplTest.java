@@ -0,0 +1,127 @@
+package com.mekki.vertx.dao.impl;
+
+import com.mekki.vertx.dao.support.exception.CircuitBreakerOpenException;
+import com.mekki.vertx.dao.support.exception.TransactionTimeoutException;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 嵌套事务的失败范围，保存点失败时的回调，看门狗超时，数据源共用的熔断器
+ */
+@RunWith(VertxUnitRunner.class)
+public class TransactionalDaoImplTest {
+
+    private Vertx vertx;
+
+    private H2Database database;
+
+    private JsonObject config;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        database = H2Database.of("transactional");
+        config = database.config(4);
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        vertx.close(context.asyncAssertSuccess());
+        database.drop();
+    }
+
+    /**
+     * 嵌套事务执行期间再次调用立即失败，结束后可以继续嵌套，外层事务的异常处理不受影响
+     */
+    @Test(timeout = 30000)
+    public void concurrentNestedTransactionIsRejected(TestContext context) {
+        IllegalStateException nestedFailure = new IllegalStateException("nested");
+        IllegalStateException outerFailure = new IllegalStateException("outer");
+
+        Async async = context.async();
+        TransactionalDaoImpl.<Void>inTransaction(vertx, config, tx -> {
+            Future<Void> first = Future.future();
+            tx.<Void>inTransaction(nested -> vertx.setTimer(20, t -> nested.fail(nestedFailure)), first);
+            tx.<String>inTransaction(nested -> context.fail("block must not run"), context.asyncAssertFailure(ex ->
+                context.assertTrue(ex instanceof IllegalStateException, ex.toString())));
+
+            Future<Void> outcome = Future.future();
+            first.setHandler(a -> {
+                context.assertTrue(a.failed() && a.cause() == nestedFailure, String.valueOf(a.cause()));
+                tx.<String>inTransaction(nested -> nested.complete("second"), context.asyncAssertSuccess(b -> {
+                    context.assertEquals("second", b);
+                    tx.insert(Item.of("outer", 1), ar -> {
+                        throw outerFailure;
+                    });
+                }));
+            });
+            return outcome;
+        }, context.asyncAssertFailure(ex -> {
+            context.assertTrue(ex == outerFailure, "exception thrown in a callback fails the outer transaction");
+            async.complete();
+        }));
+    }
+
+    /**
+     * 无法创建保存点时嵌套事务的回调为失败
+     */
+    @Test(timeout = 30000)
+    public void nestedTransactionFailsWithoutSavepoint(TestContext context) {
+        Async async = context.async();
+        TransactionalDaoImpl.createTransactional(vertx, config, context.asyncAssertSuccess(tx -> tx.close(
+            context.asyncAssertSuccess(closed -> tx.<Void>inTransaction(nested -> context.fail("block must not run"),
+                context.asyncAssertFailure(ex -> async.complete()))))));
+    }
+
+    /**
+     * 看门狗强制回滚时 inTransaction 的回调为 TransactionTimeoutException
+     */
+    @Test(timeout = 30000)
+    public void watchdogFailsTransactionRunner(TestContext context) {
+        JsonObject timed = config.copy().put("transaction", new JsonObject().put("timeout", 200));
+        int activeBefore = TransactionalDaoImpl.metrics().getInteger("active");
+        long forcedBefore = TransactionalDaoImpl.metrics().getLong("forced_rollbacks");
+
+        Async async = context.async();
+        TransactionalDaoImpl.<Void>inTransaction(vertx, timed, tx -> Future.future(),
+            context.asyncAssertFailure(ex -> {
+                context.assertTrue(ex instanceof TransactionTimeoutException, ex.toString());
+                context.assertEquals(forcedBefore + 1, TransactionalDaoImpl.metrics().getLong("forced_rollbacks"));
+                context.assertEquals(activeBefore, TransactionalDaoImpl.metrics().getInteger("active"));
+                async.complete();
+            }));
+    }
+
+    /**
+     * 同一数据源的事务共用熔断器：普通DAO获取连接失败打开熔断后，新事务快速失败
+     */
+    @Test(timeout = 30000)
+    public void transactionsShareCircuitBreaker(TestContext context) {
+        JsonObject unreachable = new JsonObject()
+            .put("url", "jdbc:h2:tcp://127.0.0.1:1/unreachable")
+            .put("driver_class", "org.h2.Driver")
+            .put("datasource_name", "unreachable")
+            .put("acquire_retry_attempts", 1)
+            .put("acquire_retry_delay", 10)
+            .put("circuit_breaker", new JsonObject().put("failure_threshold", 1).put("reset_timeout", 60000));
+
+        Async async = context.async();
+        DefaultDaoImpl.create(vertx, unreachable, context.asyncAssertSuccess(dao -> dao.select(new Item(),
+            context.asyncAssertFailure(ex -> {
+                context.assertFalse(ex instanceof CircuitBreakerOpenException, ex.toString());
+                TransactionalDaoImpl.createTransactional(vertx, unreachable, context.asyncAssertFailure(txEx -> {
+                    context.assertTrue(txEx instanceof CircuitBreakerOpenException, txEx.toString());
+                    async.complete();
+                }));
+            }))));
+    }
+}
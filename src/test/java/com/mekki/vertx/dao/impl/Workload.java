@@ -0,0 +1,293 @@
+package com.mekki.vertx.dao.impl;
+
+import com.mekki.vertx.dao.support.AggregateRow;
+import com.mekki.vertx.dao.support.Aggregation;
+import com.mekki.vertx.dao.support.DataFormat;
+import com.mekki.vertx.dao.support.PageSupport;
+import com.mekki.vertx.dao.support.Savepoint;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 一轮覆盖 DefaultDaoImpl 和 TransactionalDaoImpl 全部操作的负载，每轮只读写 name 为本轮标记的行，
+ * 各轮可以并发执行；每个操作的耗时记录到 LatencyRecorder，结果不符时本轮失败
+ */
+public class Workload {
+
+    private Vertx vertx;
+
+    private JsonObject config;
+
+    private DefaultDaoImpl dao;
+
+    private LatencyRecorder recorder;
+
+    private File directory;
+
+    public Workload(Vertx vertx, JsonObject config, DefaultDaoImpl dao, LatencyRecorder recorder, File directory) {
+        this.vertx = vertx;
+        this.config = config;
+        this.dao = dao;
+        this.recorder = recorder;
+        this.directory = directory;
+    }
+
+    /**
+     * 写缓冲配置，Workload 中 insertBuffered 需要
+     *
+     * @return
+     */
+    public static JsonObject writeBehind() {
+        return new JsonObject().put(Item.class.getName(), new JsonObject().put("max_rows", 50).put("max_delay", 10));
+    }
+
+    /**
+     * 执行一轮
+     *
+     * @param tag 本轮标记（不超过 8 个字符）
+     * @return
+     */
+    public Future<Void> round(String tag) {
+        return curd(tag)
+            .compose(v -> enhanced(tag))
+            .compose(v -> bulk(tag))
+            .compose(v -> streams(tag))
+            .compose(v -> transactions(tag))
+            .compose(v -> this.<Integer>timed("deleteWhere", h -> dao.deleteWhere(Item.of(tag, null), h)))
+            .compose(n -> this.<Long>timed("selectCount", h -> dao.selectCount(Item.of(tag, null), h)))
+            .map(count -> {
+                expect(count == 0, tag + " rows left after deleteWhere: " + count);
+                return null;
+            });
+    }
+
+    /**
+     * insert / select / selectOne / update / delete
+     */
+    private Future<Void> curd(String tag) {
+        Item item = Item.of(tag, 1);
+
+        return this.<Integer>timed("insert", h -> dao.insert(item, h))
+            .compose(n -> {
+                expect(n == 1 && item.getId() != null && item.getVersion() == 0, "insert " + tag);
+                return this.<List<Item>>timed("select", h -> dao.select(Item.of(tag, null), h));
+            })
+            .compose(list -> {
+                expect(list.size() == 1, "select " + tag + " found " + list.size());
+                Item byId = new Item();
+                byId.setId(item.getId());
+                return this.<Item>timed("selectOne", h -> dao.selectOne(byId, h));
+            })
+            .compose(found -> {
+                expect(found != null && tag.equals(found.getName()), "selectOne " + tag);
+                found.setAmount(10);
+                return this.<Integer>timed("update", h -> dao.update(found, h)).map(n -> found);
+            })
+            .compose(updated -> {
+                expect(updated.getVersion() == 1, "update " + tag + " version " + updated.getVersion());
+                return this.<Integer>timed("delete", h -> dao.delete(updated, h));
+            })
+            .map(n -> {
+                expect(n == 1, "delete " + tag);
+                return null;
+            });
+    }
+
+    /**
+     * insertSelective / updateSelective / upsert（不带版本的实体）/ selectCount / aggregate / 分页 / insertBuffered
+     */
+    private Future<Void> enhanced(String tag) {
+        Item first = Item.of(tag, 2);
+        Item second = Item.of(tag, 3);
+
+        return this.<Integer>timed("insertSelective", h -> dao.insertSelective(first, h))
+            .compose(n -> this.<Integer>timed("insertSelective", h -> dao.insertSelective(second, h)))
+            .compose(n -> {
+                first.setAmount(4);
+                return this.<Integer>timed("updateSelective", h -> dao.updateSelective(first, h));
+            })
+            .compose(n -> {
+                expect(n == 1, "updateSelective " + tag);
+                second.setAmount(5);
+                return this.<Integer>timed("updateSelective", h -> dao.updateSelective(second, h));
+            })
+            .compose(n -> {
+                expect(n == 1, "updateSelective " + tag);
+                Document document = Document.of(new JsonObject().put("tag", tag));
+                return this.<Integer>timed("insertSelective", h -> dao.insertSelective(document, h))
+                    .compose(inserted -> {
+                        Document merged = Document.of(new JsonObject().put("tag", tag).put("merged", true));
+                        merged.setId(document.getId());
+                        return this.<Integer>timed("upsert", h -> dao.upsert(merged, h));
+                    });
+            })
+            .compose(n -> this.<Integer>timed("insertBuffered", h -> dao.insertBuffered(Item.of(tag, 6), h)))
+            .compose(n -> this.<Long>timed("selectCount", h -> dao.selectCount(Item.of(tag, null), h)))
+            .compose(count -> {
+                expect(count == 3, "selectCount " + tag + " " + count);
+                return this.<List<AggregateRow>>timed("aggregate", h -> dao.aggregate(Item.of(tag, null),
+                    Aggregation.of().count("n").sum("amount", "total"), h));
+            })
+            .compose(rows -> {
+                expect(rows.size() == 1 && rows.get(0).getLong("total") == 4 + 5 + 6, "aggregate " + tag + " " + rows);
+                return this.<PageSupport<Item>>timed("selectPage",
+                    h -> dao.select(Item.of(tag, null), PageSupport.of(2, 2, "id"), h));
+            })
+            .map(page -> {
+                expect(page.getTotal() == 3 && page.getElements().size() == 1, "selectPage " + tag + " " + page);
+                return null;
+            });
+    }
+
+    /**
+     * updateWhere / deleteWhere（整体和分块）
+     */
+    private Future<Void> bulk(String tag) {
+        return this.<Integer>timed("updateWhere", h -> dao.updateWhere(Item.of(tag, null), Item.of(null, 7), h))
+            .compose(n -> {
+                expect(n == 3, "updateWhere " + tag + " " + n);
+                return this.<Integer>timed("updateWhereChunked",
+                    h -> dao.updateWhere(Item.of(tag, 7), Item.of(null, 8), 2, h));
+            })
+            .compose(n -> {
+                expect(n == 3, "updateWhere chunked " + tag + " " + n);
+                return this.<Integer>timed("deleteWhereChunked", h -> dao.deleteWhere(Item.of(tag, 8), 2, h));
+            })
+            .map(n -> {
+                expect(n == 3, "deleteWhere chunked " + tag + " " + n);
+                return null;
+            });
+    }
+
+    /**
+     * exportTo / deleteWhere / importFrom / scan
+     */
+    private Future<Void> streams(String tag) {
+        String path = new File(directory, tag + ".csv").getAbsolutePath();
+        Future<Integer> inserted = Future.succeededFuture(0);
+        for (int i = 0; i < 5; i++) {
+            int amount = i;
+            inserted = inserted.compose(n -> this.<Integer>timed("insert", h -> dao.insert(Item.of(tag, amount), h)));
+        }
+
+        return inserted
+            .compose(n -> open(path, new OpenOptions().setWrite(true).setCreate(true).setTruncateExisting(true)))
+            .compose(file -> this.<Long>timed("exportTo", h -> dao.exportTo(Item.of(tag, null), file, DataFormat.CSV, h))
+                .compose(exported -> close(file).map(exported)))
+            .compose(exported -> {
+                expect(exported == 5, "exportTo " + tag + " " + exported);
+                return this.<Integer>timed("deleteWhere", h -> dao.deleteWhere(Item.of(tag, null), h));
+            })
+            .compose(n -> open(path, new OpenOptions().setRead(true)))
+            .compose(file -> this.<Long>timed("importFrom", h -> dao.importFrom(Item.class, file, DataFormat.CSV, 2, h))
+                .compose(imported -> close(file).map(imported)))
+            .compose(imported -> {
+                expect(imported == 5, "importFrom " + tag + " " + imported);
+                long[] scanned = {0};
+                return this.<Long>timed("scan", h -> dao.scan(Item.of(tag, null), 2, 2, chunk -> {
+                    scanned[0] += chunk.size();
+                    return Future.succeededFuture();
+                }, h)).map(n -> {
+                    expect(n == 5 && scanned[0] == 5, "scan " + tag + " " + n);
+                    return null;
+                });
+            });
+    }
+
+    /**
+     * createTransactional / savepoint / rollbackTo / releaseSavepoint / commit / rollback / 嵌套 inTransaction /
+     * commitAndClose / rollbackAndClose / 静态 inTransaction
+     */
+    private Future<Void> transactions(String tag) {
+        return this.<TransactionalDaoImpl>timed("createTransactional",
+            h -> TransactionalDaoImpl.createTransactional(vertx, config, h))
+            .compose(tx -> manual(tx, tag))
+            .compose(v -> this.<Integer>timed("inTransaction", h -> TransactionalDaoImpl.inTransaction(vertx, config,
+                tx -> {
+                    Future<Integer> outer = Future.future();
+                    tx.insert(Item.of(tag, 100), outer);
+                    return outer.compose(n -> {
+                        Future<Integer> nested = Future.future();
+                        // 嵌套事务失败只回滚到保存点
+                        tx.<Integer>inTransaction(inner -> tx.insert(Item.of(tag + "-too-long", 1), inner), nested);
+                        return nested.otherwiseEmpty();
+                    }).compose(n -> {
+                        Future<Integer> nested = Future.future();
+                        tx.<Integer>inTransaction(inner -> tx.insert(Item.of(tag, 101), inner), nested);
+                        return nested;
+                    });
+                }, h)))
+            .compose(n -> this.<Long>timed("selectCount", h -> dao.selectCount(Item.of(tag, null), h)))
+            .compose(count -> {
+                // scan 剩下 5 行，手动事务提交 2 行，静态事务提交 2 行
+                expect(count == 9, "transactions " + tag + " " + count);
+                return this.<Void>timed("rollbackAndClose", h -> TransactionalDaoImpl.createTransactional(vertx, config,
+                    created -> {
+                        if (created.failed()) {
+                            h.handle(Future.failedFuture(created.cause()));
+                            return;
+                        }
+                        TransactionalDaoImpl tx = created.result();
+                        tx.insert(Item.of(tag, 200), ar -> tx.rollbackAndClose(h));
+                    }));
+            });
+    }
+
+    private Future<Void> manual(TransactionalDaoImpl tx, String tag) {
+        return this.<Integer>timed("txInsert", h -> tx.insert(Item.of(tag, 10), h))
+            .compose(n -> this.<Savepoint>timed("savepoint", tx::savepoint))
+            .compose(savepoint -> this.<Integer>timed("txInsert", h -> tx.insert(Item.of(tag, 11), h))
+                .compose(n -> this.<Void>timed("rollbackTo", h -> tx.rollbackTo(savepoint, h))))
+            .compose(v -> this.<Savepoint>timed("savepoint", tx::savepoint))
+            .compose(savepoint -> this.<Integer>timed("txInsert", h -> tx.insert(Item.of(tag, 12), h))
+                .compose(n -> this.<Void>timed("releaseSavepoint", h -> tx.releaseSavepoint(savepoint, h))))
+            .compose(v -> this.<Void>timed("commit", tx::commit))
+            .compose(v -> this.<Integer>timed("txInsert", h -> tx.insert(Item.of(tag, 13), h)))
+            .compose(n -> this.<Void>timed("rollback", tx::rollback))
+            .compose(v -> this.<Void>timed("commitAndClose", tx::commitAndClose))
+            .recover(ex -> {
+                tx.rollbackAndClose(ar -> {
+                });
+                return Future.failedFuture(ex);
+            });
+    }
+
+    private Future<AsyncFile> open(String path, OpenOptions options) {
+        Future<AsyncFile> future = Future.future();
+        vertx.fileSystem().open(path, options, future);
+        return future;
+    }
+
+    private static Future<Void> close(AsyncFile file) {
+        Future<Void> future = Future.future();
+        file.close(future);
+        return future;
+    }
+
+    private <T> Future<T> timed(String operation, Handler<Handler<AsyncResult<T>>> action) {
+        long started = System.nanoTime();
+        Future<T> future = Future.future();
+        action.handle(ar -> {
+            recorder.record(operation, System.nanoTime() - started, ar.succeeded());
+            future.handle(ar.failed()
+                ? Future.failedFuture(new IllegalStateException(operation + " failed cause : " + ar.cause(), ar.cause()))
+                : ar);
+        });
+        return future;
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("unexpected result of " + message);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 自适应并发上限的初值、上限和减小条件
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = 1_000_000L;
+
+    @Test
+    public void adaptiveLimitIsBoundedByPoolSize() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of("dao", new JsonObject().put("adaptive", true), 4);
+        assertEquals(4, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(v -> {
+            });
+            limiter.acquire(v -> {
+            });
+            limiter.release(FAST, false);
+            limiter.release(FAST, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void adaptiveLimitStartsAtInitialConcurrency() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of("dao", new JsonObject()
+            .put("adaptive", true).put("max_concurrency", 64).put("initial_concurrency", 8), 0);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void limitGrowsByOnePerRoundOfOperations() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of("dao", new JsonObject().put("adaptive", true)
+            .put("max_concurrency", 100).put("initial_concurrency", 10), 0);
+
+        // 占满当前上限，每完成一个操作后立即补上
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(v -> {
+            });
+        }
+        for (int i = 0; i < 10; i++) {
+            limiter.release(FAST, false);
+            limiter.acquire(v -> {
+            });
+        }
+        assertEquals(10, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.release(FAST, false);
+            limiter.acquire(v -> {
+            });
+        }
+        assertEquals(12, limiter.getLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void adaptiveLimitRequiresCeiling() {
+        ConcurrencyLimiter.of("dao", new JsonObject().put("adaptive", true), 0);
+    }
+
+    @Test
+    public void onlyOverloadDecreasesLimitOncePerWindow() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of("dao", new JsonObject().put("adaptive", true)
+            .put("max_concurrency", 10).put("backoff_ratio", 0.5).put("sample_window", 60000), 0);
+
+        // 约束冲突等普通失败不算过载
+        limiter.acquire(v -> {
+        });
+        limiter.release(FAST, false);
+        assertEquals(10, limiter.getLimit());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire(v -> {
+            }));
+            limiter.release(FAST, true);
+        }
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void tryAcquireDoesNotQueue() {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of("dao", new JsonObject().put("max_concurrency", 1), 0);
+
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(0, limiter.getQueued());
+
+        limiter.release(FAST, false);
+        assertTrue(limiter.tryAcquire());
+    }
+}
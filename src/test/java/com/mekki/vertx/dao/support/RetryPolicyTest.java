@@ -0,0 +1,37 @@
+package com.mekki.vertx.dao.support;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransactionRollbackException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 瞬时异常与连接类异常的区分
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void deadlockIsTransientButNotConnectionFailure() {
+        SQLException deadlock = new SQLTransactionRollbackException("deadlock", "40001");
+
+        assertTrue(RetryPolicy.isTransient(deadlock));
+        assertFalse(RetryPolicy.isConnectionFailure(deadlock));
+        assertFalse(RetryPolicy.isConnectionFailure(new SQLException("lock wait timeout", "40000")));
+    }
+
+    @Test
+    public void connectionClassFailures() {
+        assertTrue(RetryPolicy.isConnectionFailure(new SQLException("link failure", "08S01")));
+        assertTrue(RetryPolicy.isConnectionFailure(new SQLRecoverableException("closed")));
+        assertTrue(RetryPolicy.isConnectionFailure(new SQLNonTransientConnectionException("refused")));
+        assertTrue(RetryPolicy.isConnectionFailure(new RuntimeException(new SQLException("wrapped", "08006"))));
+        assertFalse(RetryPolicy.isConnectionFailure(new SQLException("syntax", "42000")));
+        assertFalse(RetryPolicy.isConnectionFailure(new IllegalStateException("not sql")));
+    }
+}
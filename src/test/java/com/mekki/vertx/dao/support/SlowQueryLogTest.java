@@ -0,0 +1,55 @@
+package com.mekki.vertx.dao.support;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 慢查询记录按 Vert.x 实例和地址共用
+ */
+@RunWith(VertxUnitRunner.class)
+public class SlowQueryLogTest {
+
+    private Vertx first;
+
+    private Vertx second;
+
+    @Before
+    public void setUp() {
+        first = Vertx.vertx();
+        second = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        first.close(context.asyncAssertSuccess());
+        second.close(context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 10000)
+    public void eachVertxAnswersFromItsOwnLog(TestContext context) {
+        JsonObject config = new JsonObject().put("threshold", 0).put("address", "test.slow_query");
+
+        SlowQueryLog firstLog = SlowQueryLog.of(first, config);
+        context.assertTrue(firstLog == SlowQueryLog.of(first, config));
+
+        SlowQueryLog secondLog = SlowQueryLog.of(second, config);
+        context.assertFalse(firstLog == secondLog);
+        secondLog.start(null, "select 1", null).finish(false);
+
+        Async async = context.async();
+        second.eventBus().<JsonArray>send("test.slow_query", new JsonObject(), context.asyncAssertSuccess(reply -> {
+            context.assertEquals(1, reply.body().size());
+            context.assertEquals(0, firstLog.recent(10).size());
+            async.complete();
+        }));
+    }
+}
@@ -0,0 +1,34 @@
+package com.mekki.vertx.dao.support.dialect;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 按 url 前缀或驱动类名推断方言
+ */
+public class DialectTest {
+
+    @Test
+    public void inferredFromUrlPrefix() {
+        assertSame(Dialect.h2(), Dialect.of(new JsonObject().put("url", "jdbc:h2:mem:test;MODE=MySQL")));
+        assertSame(Dialect.postgresql(), Dialect.of(new JsonObject().put("url", "jdbc:postgresql://db/app")));
+        assertSame(Dialect.mysql(), Dialect.of(new JsonObject().put("url", "jdbc:mysql://db/app")));
+    }
+
+    @Test
+    public void hostOrDatabaseNamesDoNotSelectDialect() {
+        assertSame(Dialect.mysql(), Dialect.of(new JsonObject().put("url", "jdbc:mysql://h2-replica/app")));
+        assertSame(Dialect.mysql(), Dialect.of(new JsonObject()
+            .put("url", "jdbc:mysql://db/postgresql_import").put("driver_class", "com.mysql.jdbc.Driver")));
+    }
+
+    @Test
+    public void inferredFromDriverClass() {
+        assertSame(Dialect.postgresql(), Dialect.of(new JsonObject().put("driver_class", "org.postgresql.Driver")));
+        assertSame(Dialect.h2(), Dialect.of(new JsonObject().put("driver_class", "org.h2.Driver")));
+        assertSame(Dialect.mysql(), Dialect.of(new JsonObject()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.mekki.vertx.dao.support.executor;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 虚拟线程连接的语句执行、结果转换、行流背压和回调所在的 context（JDK 21 以下用普通线程池代替虚拟线程）
+ */
+@RunWith(VertxUnitRunner.class)
+public class VirtualThreadSQLConnectionTest {
+
+    private static final String URL = "jdbc:h2:mem:virtual;DB_CLOSE_DELAY=-1";
+
+    private Vertx vertx;
+
+    private ExecutorService executor;
+
+    private Connection keepAlive;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        executor = Executors.newCachedThreadPool();
+        keepAlive = DriverManager.getConnection(URL);
+        keepAlive.createStatement().execute("create table t (id int auto_increment primary key, "
+            + "name varchar(16), amount decimal(10, 2), created timestamp)");
+    }
+
+    @After
+    public void tearDown(TestContext context) throws Exception {
+        keepAlive.createStatement().execute("drop all objects");
+        keepAlive.close();
+        executor.shutdown();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 30000)
+    public void statementsRunInOrderAndCallBackOnContext(TestContext context) {
+        Context ctx = vertx.getOrCreateContext();
+        Async async = context.async();
+
+        ctx.runOnContext(v -> {
+            SQLConnection connection = connect(context, ctx);
+            connection.updateWithParams("insert into t (name, amount, created) values (?, ?, ?)",
+                new JsonArray().add("a").add(1.5).add("2018-04-19 10:00:00"), context.asyncAssertSuccess(ur -> {
+                    context.assertEquals(ctx, Vertx.currentContext());
+                    context.assertEquals(1, ur.getUpdated());
+                    context.assertEquals(1, ur.getKeys().getInteger(0));
+                }));
+            connection.updateWithParams("update t set name = ? where id = ?", new JsonArray().add("b").add(1),
+                context.asyncAssertSuccess(ur -> context.assertEquals(1, ur.getUpdated())));
+            connection.queryWithParams("select name, amount, created from t where id = ?", new JsonArray().add(1),
+                context.asyncAssertSuccess(rs -> {
+                    context.assertEquals(ctx, Vertx.currentContext());
+                    context.assertEquals(1, rs.getNumRows());
+                    JsonArray row = rs.getResults().get(0);
+                    context.assertEquals("b", row.getString(0));
+                    context.assertEquals(1.5, row.getDouble(1));
+                    context.assertTrue(row.getString(2).startsWith("2018-04-"), row.getString(2));
+                    connection.close(context.asyncAssertSuccess(closed -> async.complete()));
+                }));
+        });
+    }
+
+    @Test(timeout = 30000)
+    public void rowStreamFollowsPauseAndResume(TestContext context) {
+        int rows = 300;
+        Context ctx = vertx.getOrCreateContext();
+        Async async = context.async();
+
+        ctx.runOnContext(v -> {
+            SQLConnection connection = connect(context, ctx);
+            List<JsonArray> batch = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                batch.add(new JsonArray().add("r" + i));
+            }
+
+            connection.batchWithParams("insert into t (name) values (?)", batch, context.asyncAssertSuccess(counts ->
+                connection.queryStream("select id, name from t order by id", context.asyncAssertSuccess(stream -> {
+                    context.assertEquals(1, stream.column("NAME"));
+                    int[] received = {0};
+                    boolean[] paused = {false};
+
+                    stream.exceptionHandler(context::fail);
+                    stream.endHandler(end -> {
+                        context.assertEquals(rows, received[0]);
+                        stream.close(context.asyncAssertSuccess(closed ->
+                            connection.close(context.asyncAssertSuccess(c -> async.complete()))));
+                    });
+                    stream.handler(row -> {
+                        context.assertFalse(paused[0], "no rows are delivered while paused");
+                        context.assertEquals("r" + received[0]++, row.getString(1));
+                        if (received[0] % 100 == 0) {
+                            stream.pause();
+                            paused[0] = true;
+                            vertx.setTimer(20, t -> {
+                                paused[0] = false;
+                                stream.resume();
+                            });
+                        }
+                    });
+                }))));
+        });
+    }
+
+    private SQLConnection connect(TestContext context, Context ctx) {
+        try {
+            return new VirtualThreadSQLConnection(ctx, DriverManager.getConnection(URL), executor);
+        } catch (Exception e) {
+            context.fail(e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mekki.vertx.dao.support.id;
+
+import org.junit.Test;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * Created by Mekki on 2018/4/19.
+ * 未配置节点号时雪花生成器不使用默认值
+ */
+public class IdGeneratorsTest {
+
+    @Id
+    @GeneratedValue(generator = IdGenerators.SNOWFLAKE)
+    private Long id;
+
+    @Test(expected = IllegalStateException.class)
+    public void snowflakeRequiresWorkerId() throws Exception {
+        System.clearProperty("vertx.dao.worker_id");
+        IdGenerators.resolve(IdGeneratorsTest.class.getDeclaredField("id"));
+    }
+}